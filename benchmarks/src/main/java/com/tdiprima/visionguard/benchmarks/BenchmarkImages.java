@@ -0,0 +1,112 @@
+package com.tdiprima.visionguard.benchmarks;
+
+import com.tdiprima.visionguard.TextDetector.TextRegion;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferUShort;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import javax.imageio.ImageIO;
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.UID;
+import org.dcm4che3.data.VR;
+import org.dcm4che3.io.DicomOutputStream;
+import org.dcm4che3.util.UIDUtils;
+
+/**
+ * Deterministic inputs shared by the benchmarks: the bundled sample images,
+ * synthetic frames with burned-in text, and generated DICOM files.
+ *
+ * @author tdiprima
+ */
+public class BenchmarkImages {
+
+    // One of the images bundled under src/main/resources/images
+    public static BufferedImage bundled(String name) throws IOException {
+        try (InputStream in = BenchmarkImages.class.getResourceAsStream("/images/" + name)) {
+            if (in == null) {
+                throw new IOException("Bundled image not found: " + name);
+            }
+            return ImageIO.read(in);
+        }
+    }
+
+    // A noisy frame with a line of overlay text in each corner
+    public static BufferedImage frame(int size, int type) {
+        BufferedImage image = new BufferedImage(size, size, type);
+        Graphics2D g = image.createGraphics();
+        Random random = new Random(42);
+        for (int i = 0; i < 200; i++) {
+            g.setColor(new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256)));
+            g.fillOval(random.nextInt(size), random.nextInt(size), size / 10, size / 10);
+        }
+        g.setColor(Color.WHITE);
+        g.setFont(new Font(Font.MONOSPACED, Font.PLAIN, Math.max(12, size / 64)));
+        g.drawString("DOE^JANE 1970-01-01", 10, size / 32);
+        g.drawString("MRN 0012345678", size / 2, size / 32);
+        g.drawString("ACC 998877", 10, size - size / 32);
+        g.drawString("2024-05-06 10:11", size / 2, size - size / 32);
+        g.dispose();
+        return image;
+    }
+
+    // Regions laid out over the frame, roughly where overlay text sits
+    public static List<TextRegion> regions(int size, int count) {
+        List<TextRegion> regions = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int x = (i * size / count) % (size - 120);
+            int y = i % 2 == 0 ? 5 : size - 40;
+            regions.add(new TextRegion(x, y, 110, 30, "WORD" + i));
+        }
+        return regions;
+    }
+
+    // A 16-bit MONOCHROME2 Part 10 file in the given transfer syntax
+    public static File dicom(int size, String transferSyntax) throws IOException {
+        BufferedImage pixels = new BufferedImage(size, size, BufferedImage.TYPE_USHORT_GRAY);
+        short[] data = ((DataBufferUShort) pixels.getRaster().getDataBuffer()).getData();
+        Random random = new Random(42);
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (short) (1000 + random.nextInt(64) + (i % size) / 4);
+        }
+
+        Attributes dataset = new Attributes();
+        dataset.setString(Tag.SOPClassUID, VR.UI, UID.SecondaryCaptureImageStorage);
+        dataset.setString(Tag.SOPInstanceUID, VR.UI, UIDUtils.createUID());
+        dataset.setString(Tag.StudyInstanceUID, VR.UI, UIDUtils.createUID());
+        dataset.setString(Tag.SeriesInstanceUID, VR.UI, UIDUtils.createUID());
+        dataset.setString(Tag.Modality, VR.CS, "OT");
+        dataset.setInt(Tag.Rows, VR.US, size);
+        dataset.setInt(Tag.Columns, VR.US, size);
+        dataset.setInt(Tag.SamplesPerPixel, VR.US, 1);
+        dataset.setString(Tag.PhotometricInterpretation, VR.CS, "MONOCHROME2");
+        dataset.setInt(Tag.BitsAllocated, VR.US, 16);
+        dataset.setInt(Tag.BitsStored, VR.US, 12);
+        dataset.setInt(Tag.HighBit, VR.US, 11);
+        dataset.setInt(Tag.PixelRepresentation, VR.US, 0);
+        dataset.setValue(Tag.PixelData, VR.OW, toLittleEndian(data));
+
+        File file = File.createTempFile("visionguard-bench-" + size + "-", ".dcm");
+        file.deleteOnExit();
+        try (DicomOutputStream out = new DicomOutputStream(file)) {
+            out.writeDataset(dataset.createFileMetaInformation(transferSyntax), dataset);
+        }
+        return file;
+    }
+
+    private static byte[] toLittleEndian(short[] data) {
+        byte[] bytes = new byte[data.length * 2];
+        for (int i = 0; i < data.length; i++) {
+            bytes[2 * i] = (byte) data[i];
+            bytes[2 * i + 1] = (byte) (data[i] >> 8);
+        }
+        return bytes;
+    }
+}
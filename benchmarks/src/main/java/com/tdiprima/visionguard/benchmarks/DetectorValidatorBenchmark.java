@@ -0,0 +1,62 @@
+package com.tdiprima.visionguard.benchmarks;
+
+import com.tdiprima.visionguard.DetectorValidator;
+import com.tdiprima.visionguard.TextDetector.DetectionResult;
+import com.tdiprima.visionguard.TextDetector.TextRegion;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Comparing Tesseract regions with an Ollama response and writing the report.
+ *
+ * @author tdiprima
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DetectorValidatorBenchmark {
+
+    @Param({"10", "200"})
+    public int regionCount;
+
+    private DetectionResult tesseractResult;
+    private DetectionResult ollamaResult;
+    private File report;
+
+    @Setup
+    public void setup() throws IOException {
+        BufferedImage image = new BufferedImage(1, 1, BufferedImage.TYPE_BYTE_GRAY);
+        List<TextRegion> regions = BenchmarkImages.regions(2048, regionCount);
+        tesseractResult = new DetectionResult(image, regions);
+        // Half the words match, half are only seen by Ollama
+        String response = regions.stream()
+                .map(region -> regions.indexOf(region) % 2 == 0 ? region.text : "OTHER" + regions.indexOf(region))
+                .collect(Collectors.joining("\n"));
+        ollamaResult = new DetectionResult(image, response);
+        report = File.createTempFile("visionguard-bench-report-", ".txt");
+    }
+
+    @TearDown
+    public void tearDown() {
+        report.delete();
+    }
+
+    @Benchmark
+    public long validate() {
+        DetectorValidator.validate(tesseractResult, ollamaResult, report.getPath());
+        return report.length();
+    }
+}
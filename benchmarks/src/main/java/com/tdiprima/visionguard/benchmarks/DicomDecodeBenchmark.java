@@ -0,0 +1,51 @@
+package com.tdiprima.visionguard.benchmarks;
+
+import com.tdiprima.visionguard.DICOMImageReader;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.dcm4che3.data.UID;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * DICOM decode time by frame size and transfer syntax.
+ *
+ * @author tdiprima
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DicomDecodeBenchmark {
+
+    private static final Map<String, String> TRANSFER_SYNTAXES = Map.of(
+            "implicitLE", UID.ImplicitVRLittleEndian,
+            "explicitLE", UID.ExplicitVRLittleEndian,
+            "deflated", UID.DeflatedExplicitVRLittleEndian);
+
+    @Param({"512", "2048"})
+    public int size;
+
+    @Param({"implicitLE", "explicitLE", "deflated"})
+    public String transferSyntax;
+
+    private File file;
+
+    @Setup
+    public void setup() throws IOException {
+        file = BenchmarkImages.dicom(size, TRANSFER_SYNTAXES.get(transferSyntax));
+    }
+
+    @Benchmark
+    public BufferedImage readFirstFrame() throws IOException {
+        return DICOMImageReader.readDICOMAsBufferedImage(file);
+    }
+}
@@ -0,0 +1,50 @@
+package com.tdiprima.visionguard.benchmarks;
+
+import com.tdiprima.visionguard.DICOMImageReader;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Re-encoding a rendered image with saveBufferedImageAsDICOM.
+ *
+ * @author tdiprima
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DicomWriteBenchmark {
+
+    @Param({"512", "2048"})
+    public int size;
+
+    private BufferedImage image;
+    private File output;
+
+    @Setup
+    public void setup() throws IOException {
+        image = BenchmarkImages.frame(size, BufferedImage.TYPE_INT_ARGB);
+        output = File.createTempFile("visionguard-bench-out-", ".dcm");
+    }
+
+    @TearDown
+    public void tearDown() {
+        output.delete();
+    }
+
+    @Benchmark
+    public long saveAsDicom() throws IOException {
+        DICOMImageReader.saveBufferedImageAsDICOM(image, output);
+        return output.length();
+    }
+}
@@ -0,0 +1,72 @@
+package com.tdiprima.visionguard.benchmarks;
+
+import com.tdiprima.visionguard.ImageUtils;
+import com.tdiprima.visionguard.TextDetector.TextRegion;
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Each ImageUtils action on a large frame, rendering to a copy and in place.
+ * In-place runs paint over the same frame repeatedly, which costs the same
+ * as painting a fresh one.
+ *
+ * @author tdiprima
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ImageUtilsBenchmark {
+
+    @Param({"4096"})
+    public int size;
+
+    // 10 = TYPE_BYTE_GRAY, 11 = TYPE_USHORT_GRAY, 5 = TYPE_3BYTE_BGR
+    @Param({"10", "11", "5"})
+    public int imageType;
+
+    @Param({"false", "true"})
+    public boolean inPlace;
+
+    private BufferedImage image;
+    private List<TextRegion> regions;
+
+    @Setup
+    public void setup() {
+        image = BenchmarkImages.frame(size, imageType);
+        regions = BenchmarkImages.regions(size, 20);
+    }
+
+    @Benchmark
+    public BufferedImage outline() {
+        return ImageUtils.outlineTextRegions(image, regions, "frame.png", inPlace);
+    }
+
+    @Benchmark
+    public BufferedImage mask() {
+        return ImageUtils.maskTextRegions(image, regions, inPlace);
+    }
+
+    @Benchmark
+    public BufferedImage burn() {
+        return ImageUtils.burnTextRegions(image, regions, inPlace);
+    }
+
+    @Benchmark
+    public BufferedImage burnDicom() {
+        return ImageUtils.burnDICOMTextRegions(image, regions, inPlace);
+    }
+
+    @Benchmark
+    public BufferedImage watermark() {
+        return ImageUtils.addWatermark(image, "QUARANTINE", inPlace);
+    }
+}
@@ -0,0 +1,58 @@
+package com.tdiprima.visionguard.benchmarks;
+
+import com.tdiprima.visionguard.OllamaPayloadWriter;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Encoding the Ollama request body (PNG plus Base64 JSON), without the network.
+ *
+ * @author tdiprima
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class OllamaPayloadBenchmark {
+
+    @Param({"512", "2048"})
+    public int size;
+
+    private BufferedImage image;
+
+    @Setup
+    public void setup() {
+        image = BenchmarkImages.frame(size, BufferedImage.TYPE_3BYTE_BGR);
+    }
+
+    @Benchmark
+    public long encodePayload() throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        OllamaPayloadWriter.write(out, "llama3.2-vision", "Find all text in this image.", image);
+        return out.count;
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.tdiprima.visionguard.benchmarks;
+
+import com.tdiprima.visionguard.DetectorConfig;
+import com.tdiprima.visionguard.TesseractTextDetector;
+import com.tdiprima.visionguard.TextDetector.DetectionResult;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Tesseract word detection on the bundled sample images. The tessdata
+ * directory comes from -Dtessdata=... or TESSDATA_PREFIX.
+ *
+ * @author tdiprima
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TesseractDetectBenchmark {
+
+    @Param({"test_small_text.png", "test_medium_text.png", "test_large_text.png"})
+    public String imageName;
+
+    @Param({"false", "true"})
+    public boolean preprocess;
+
+    private TesseractTextDetector detector;
+    private BufferedImage image;
+
+    @Setup
+    public void setup() throws IOException {
+        String tessdata = System.getProperty("tessdata", System.getenv().getOrDefault("TESSDATA_PREFIX", "/usr/share/tesseract/tessdata"));
+        DetectorConfig config = new DetectorConfig();
+        config.ocrPreprocess = preprocess;
+
+        detector = new TesseractTextDetector();
+        detector.setupParameters(tessdata, "eng");
+        detector.initialize(config);
+        image = BenchmarkImages.bundled(imageName);
+    }
+
+    @Benchmark
+    public DetectionResult detect() {
+        return detector.detect(image);
+    }
+}
@@ -0,0 +1,126 @@
+package com.tdiprima.visionguard;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * An append-only checkpoint journal in the report directory. Each line records
+ * one file's final status and output paths. Lines are buffered and fsynced in
+ * batches, by count or at least once a second, so a crashed run can be resumed
+ * without re-reading the files it already finished.
+ *
+ * @author tdiprima
+ */
+public class BatchJournal implements AutoCloseable {
+
+    public static final String FILE_NAME = "visionguard.journal";
+
+    public enum Status {
+        DONE,     // Actions and report written
+        SKIPPED,  // Unreadable image or no text found
+        FAILED    // Error; retried on resume
+    }
+
+    private static final Logger logger = Logger.getLogger(BatchJournal.class.getName());
+
+    private final FileChannel channel;
+    private final Set<String> completed = new HashSet<>();
+    private final StringBuilder pending = new StringBuilder();
+    private final int syncEvery;
+    private final ScheduledExecutorService flusher;
+    private int pendingRecords = 0;
+
+    public BatchJournal(File reportDir, boolean resume, int syncEvery) throws IOException {
+        File journalFile = new File(reportDir, FILE_NAME);
+        if (resume && journalFile.exists()) {
+            loadCompleted(journalFile);
+        }
+
+        this.channel = FileChannel.open(journalFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                resume ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING);
+        this.syncEvery = syncEvery;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "journal-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, 1, 1, TimeUnit.SECONDS);
+    }
+
+    // A torn last line from a crash is ignored, so that file is simply redone
+    private void loadCompleted(File journalFile) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(journalFile.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t");
+                if (fields.length < 2) {
+                    continue;
+                }
+                if (fields[0].equals(Status.DONE.name()) || fields[0].equals(Status.SKIPPED.name())) {
+                    completed.add(fields[1]);
+                } else if (fields[0].equals(Status.FAILED.name())) {
+                    completed.remove(fields[1]);
+                }
+            }
+        }
+        System.out.println("Resuming: " + completed.size() + " files already completed.");
+    }
+
+    public boolean isCompleted(File file) {
+        return completed.contains(file.getAbsolutePath());
+    }
+
+    public void record(File file, Status status, List<String> outputs) {
+        synchronized (this) {
+            pending.append(status.name()).append('\t')
+                    .append(file.getAbsolutePath()).append('\t')
+                    .append(String.join(";", outputs)).append('\n');
+            if (++pendingRecords < syncEvery) {
+                return;
+            }
+        }
+        flushQuietly();
+    }
+
+    public synchronized void flush() throws IOException {
+        if (pendingRecords == 0) {
+            return;
+        }
+        ByteBuffer bytes = StandardCharsets.UTF_8.encode(pending.toString());
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        channel.force(false);
+        pending.setLength(0);
+        pendingRecords = 0;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Failed to write journal: {0}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flusher.shutdownNow();
+        flush();
+        channel.close();
+    }
+}
@@ -6,36 +6,113 @@ import org.dcm4che3.io.DicomOutputStream;
 import org.dcm4che3.util.UIDUtils;
 import java.awt.image.DataBufferByte;
 import java.awt.image.BufferedImage;
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.Date;
 import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageInputStream;
 import org.dcm4che3.imageio.plugins.dcm.DicomImageReader;
 import org.dcm4che3.imageio.plugins.dcm.DicomImageReaderSpi;
-import org.dcm4che3.io.DicomInputStream;
+import org.dcm4che3.imageio.plugins.dcm.DicomMetaData;
 
 /**
- * Reads a DICOM image file and converts it to a BufferedImage
+ * Reads a DICOM image file and converts it to a BufferedImage. Files are
+ * memory-mapped and parsed once; the header attributes come back alongside
+ * the frames so later stages can reuse them without touching the file again.
  *
  * @author tdiprima
  */
 public class DICOMImageReader {
 
     public static BufferedImage readDICOMAsBufferedImage(File dicomFile) throws IOException {
+        try (DicomImage dicom = open(dicomFile)) {
+            return dicom.readFrame(0);
+        }
+    }
+
+    // Opens and parses the file once; frames are decoded on demand
+    public static DicomImage open(File dicomFile) throws IOException {
+        ImageInputStream input;
+        try (FileChannel channel = FileChannel.open(dicomFile.toPath(), StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed, so no file handle is held
+            input = channel.size() <= Integer.MAX_VALUE
+                    ? new MappedImageInputStream(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()))
+                    : ImageIO.createImageInputStream(dicomFile);
+        }
+        return open(input, dicomFile.getName());
+    }
+
+    // Same as open(File), for a dataset that is already in memory
+    public static DicomImage open(ByteBuffer data, String name) throws IOException {
+        return open(new MappedImageInputStream(data), name);
+    }
+
+    private static DicomImage open(ImageInputStream input, String name) throws IOException {
         DicomImageReader reader = new DicomImageReader(new DicomImageReaderSpi());
         try {
-            reader.setInput(ImageIO.createImageInputStream(dicomFile));
+            reader.setInput(input);
+            // The reader parses the header once; its metadata is reused instead of a second pass
+            DicomMetaData metadata = reader.getStreamMetadata();
+            return new DicomImage(reader, input, metadata.getFileMetaInformation(), metadata.getAttributes(),
+                    reader.getNumImages(true));
+        } catch (IOException | RuntimeException e) {
+            reader.dispose();
+            input.close();
+            throw new IOException("Failed to read DICOM file: " + name, e);
+        }
+    }
+
+    // A parsed DICOM object: header attributes plus frames that are decoded on demand.
+    // Single-frame images report one frame; cine loops and enhanced objects report all of them.
+    public static class DicomImage implements Closeable {
 
-            // Handle missing transfer syntax by explicitly setting default
-            DicomInputStream dicomInputStream = new DicomInputStream(dicomFile);
-            dicomInputStream.setIncludeBulkData(DicomInputStream.IncludeBulkData.URI);
-            dicomInputStream.readDatasetUntilPixelData(); // Attempt to read until pixel data
+        private final DicomImageReader reader;
+        private final ImageInputStream input;
+        private final Attributes fileMetaInformation;
+        private final Attributes attributes;
+        private final int numFrames;
 
-            return reader.read(0);
-        } catch (IOException e) {
-            throw new IOException("Failed to read DICOM file: " + dicomFile.getName(), e);
+        private DicomImage(DicomImageReader reader, ImageInputStream input, Attributes fileMetaInformation,
+                Attributes attributes, int numFrames) {
+            this.reader = reader;
+            this.input = input;
+            this.fileMetaInformation = fileMetaInformation;
+            this.attributes = attributes;
+            this.numFrames = Math.max(numFrames, 1);
         }
 
+        public Attributes getFileMetaInformation() {
+            return fileMetaInformation;
+        }
+
+        // Pixel data is left as a reference into the source, not loaded
+        public Attributes getAttributes() {
+            return attributes;
+        }
+
+        // The source bytes, for writers that copy untouched data straight through
+        public ImageInputStream getInput() {
+            return input;
+        }
+
+        public int getNumFrames() {
+            return numFrames;
+        }
+
+        // Not thread-safe: frames are decoded one at a time by the caller
+        public BufferedImage readFrame(int index) throws IOException {
+            return reader.read(index);
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.dispose();
+            input.close();
+        }
     }
 
     public static void saveBufferedImageAsDICOM(BufferedImage image, File dicomFile) throws IOException {
@@ -79,10 +156,12 @@ public class DICOMImageReader {
         byte[] pixelData = ((DataBufferByte) rgbImage.getRaster().getDataBuffer()).getData();
         dataset.setBytes(Tag.PixelData, VR.OW, pixelData);
 
-        // Write to DICOM file
-        try (DicomOutputStream dos = new DicomOutputStream(dicomFile)) {
-            dos.writeDataset(dataset.createFileMetaInformation(UID.ImplicitVRLittleEndian), dataset);
-        }
+        // Write to DICOM file, under a temporary name until it is complete
+        OutputWriter.writeAtomically(dicomFile, out -> {
+            try (DicomOutputStream dos = new DicomOutputStream(out, UID.ExplicitVRLittleEndian)) {
+                dos.writeDataset(dataset.createFileMetaInformation(UID.ImplicitVRLittleEndian), dataset);
+            }
+        });
     }
 
 }
@@ -0,0 +1,217 @@
+package com.tdiprima.visionguard;
+
+import com.google.gson.Gson;
+import com.tdiprima.visionguard.TextDetector.DetectionResult;
+import com.tdiprima.visionguard.TextDetector.TextRegion;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DataBufferShort;
+import java.awt.image.DataBufferUShort;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A persistent, content-addressed cache of detection results. Entries are
+ * keyed by a hash of the image pixels plus the detector settings that affect
+ * the output, stored as one JSON file each, and evicted least-recently-used
+ * once the directory grows past its size cap.
+ *
+ * @author tdiprima
+ */
+public class DetectionCache {
+
+    private static final Logger logger = Logger.getLogger(DetectionCache.class.getName());
+    private static final Gson gson = new Gson();
+
+    private final File directory;
+    private final long maxBytes;
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true); // key -> size, in LRU order
+    private long totalBytes = 0;
+
+    // What gets written to disk for each entry
+    private static class Entry {
+
+        List<TextRegion> regions;
+        String rawResponse;
+    }
+
+    public DetectionCache(File directory, long maxBytes) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Failed to create cache directory: " + directory);
+        }
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+
+        // Rebuild the LRU order from file modification times, oldest first
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(".json"));
+        if (files != null) {
+            Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+            for (File file : files) {
+                entries.put(file.getName().substring(0, file.getName().length() - 5), file.length());
+                totalBytes += file.length();
+            }
+        }
+    }
+
+    // Combine the pixel hash with a detector's settings into a cache key
+    public static String key(String pixelHash, TextDetector detector) {
+        return sha256Hex((pixelHash + "|" + detector.settingsFingerprint()).getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Returns null on a miss
+    public DetectionResult get(String key, BufferedImage image) {
+        File file = entryFile(key);
+        synchronized (this) {
+            if (entries.get(key) == null) {
+                return null;
+            }
+        }
+
+        try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            Entry entry = gson.fromJson(reader, Entry.class);
+            file.setLastModified(System.currentTimeMillis()); // Keeps LRU order across runs
+            DetectionResult result = entry.regions != null
+                    ? new DetectionResult(image, entry.regions)
+                    : new DetectionResult(image, entry.rawResponse);
+            result.rawResponse = entry.rawResponse;
+            return result;
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.WARNING, "Ignoring unreadable cache entry {0}: {1}", new Object[]{key, e.getMessage()});
+            remove(key);
+            return null;
+        }
+    }
+
+    public void put(String key, DetectionResult result) {
+        Entry entry = new Entry();
+        entry.regions = result.regions;
+        entry.rawResponse = result.rawResponse;
+
+        File file = entryFile(key);
+        try {
+            // Write to a temp file first so readers never see a partial entry
+            Path temp = Files.createTempFile(directory.toPath(), key, ".tmp");
+            try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                gson.toJson(entry, writer);
+            }
+            Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to write cache entry {0}: {1}", new Object[]{key, e.getMessage()});
+            return;
+        }
+
+        List<String> evicted = new ArrayList<>();
+        synchronized (this) {
+            Long previous = entries.put(key, file.length());
+            totalBytes += file.length() - (previous != null ? previous : 0);
+
+            Iterator<Map.Entry<String, Long>> oldest = entries.entrySet().iterator();
+            while (totalBytes > maxBytes && oldest.hasNext()) {
+                Map.Entry<String, Long> victim = oldest.next();
+                if (victim.getKey().equals(key)) {
+                    continue;
+                }
+                totalBytes -= victim.getValue();
+                evicted.add(victim.getKey());
+                oldest.remove();
+            }
+        }
+        for (String victim : evicted) {
+            entryFile(victim).delete();
+        }
+    }
+
+    private void remove(String key) {
+        synchronized (this) {
+            Long size = entries.remove(key);
+            if (size != null) {
+                totalBytes -= size;
+            }
+        }
+        entryFile(key).delete();
+    }
+
+    private File entryFile(String key) {
+        return new File(directory, key + ".json");
+    }
+
+    // Hash the raw raster contents, without converting pixels
+    public static String pixelHash(BufferedImage image) {
+        MessageDigest digest = sha256();
+        digest.update(ByteBuffer.allocate(12).putInt(image.getWidth()).putInt(image.getHeight()).putInt(image.getType()).array());
+
+        DataBuffer buffer = image.getRaster().getDataBuffer();
+        for (int bank = 0; bank < buffer.getNumBanks(); bank++) {
+            if (buffer instanceof DataBufferByte bytes) {
+                digest.update(bytes.getData(bank));
+            } else if (buffer instanceof DataBufferUShort shorts) {
+                updateShorts(digest, shorts.getData(bank));
+            } else if (buffer instanceof DataBufferShort shorts) {
+                updateShorts(digest, shorts.getData(bank));
+            } else if (buffer instanceof DataBufferInt ints) {
+                updateInts(digest, ints.getData(bank));
+            } else {
+                updateInts(digest, image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth()));
+                break;
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static void updateShorts(MessageDigest digest, short[] data) {
+        ByteBuffer chunk = ByteBuffer.allocate(8192);
+        for (short value : data) {
+            if (!chunk.hasRemaining()) {
+                digest.update(chunk.array(), 0, chunk.position());
+                chunk.clear();
+            }
+            chunk.putShort(value);
+        }
+        digest.update(chunk.array(), 0, chunk.position());
+    }
+
+    private static void updateInts(MessageDigest digest, int[] data) {
+        ByteBuffer chunk = ByteBuffer.allocate(8192);
+        for (int value : data) {
+            if (!chunk.hasRemaining()) {
+                digest.update(chunk.array(), 0, chunk.position());
+                chunk.clear();
+            }
+            chunk.putInt(value);
+        }
+        digest.update(chunk.array(), 0, chunk.position());
+    }
+
+    private static String sha256Hex(byte[] data) {
+        return HexFormat.of().formatHex(sha256().digest(data));
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -11,6 +11,53 @@ public class DetectorConfig {
     public int maxWidth = 500;
     public int maxHeight = 500;
     public boolean enableOllama = false;
+    public int ollamaConnectTimeoutMs = 10000;
+    public int ollamaTimeoutMs = 300000;
+    public int ollamaMaxInFlight = 2;
+    public int threads = 1;
+    public int scheduleWindow = 256;
+    public int frameThreads = 1;
+    public boolean dicomInPlace = false;
+    public boolean renderInPlace = false;
+    public boolean warmTesseract = false;
+    public boolean tiling = false;
+    public int tileSize = 2048;
+    public int tileOverlap = 256;
+    public int tileThreads = 4;
+    public RegionMerger.Mode mergeRegions = RegionMerger.Mode.NONE;
+    public int mergePadding = 2;
+    public int outputThreads = 0;
+    public int outputQueue = 16;
+    public int pngLevel = -1;
+    public String roiProfiles = null;
+    public boolean roiFallback = false;
+    public boolean ocrPreprocess = false;
+    public boolean triage = false;
+    public int triageMinStrokes = 8;
+    public int triageAuditEvery = 50;
+    public double ocrScale = 1.0;
+    public boolean ocrBinarize = true;
+    public int ocrThresholdWindow = 31;
+    public boolean recursive = false;
+    public boolean useDicomdir = true;
+    public boolean pipeline = false;
+    public int decodeThreads = 1;
+    public int actThreads = 1;
+    public int writeThreads = 1;
+    public int queueCapacity = 4;
+    public String reportFormat = "text";
+    public int reportQueue = 1024;
+    public boolean metrics = false;
+    public int metricsInterval = 10;
+    public int metricsPort = 0;
+    public int servePort = 0;
+    public int serveMaxInFlight = 4;
+    public int receivePort = 0;
+    public String receiveAET = "VISIONGUARD";
+    public boolean resume = false;
+    public int journalSyncEvery = 64;
+    public String cacheDir = null;
+    public int cacheMaxMB = 1024;
 
     // Load parameters from CLI arguments
     public static DetectorConfig fromArgs(String[] args) {
@@ -32,6 +79,157 @@ public class DetectorConfig {
                 if (arg.startsWith("--ollama=")) {
                     config.enableOllama = Boolean.parseBoolean(arg.split("=")[1]);
                 }
+                if (arg.startsWith("--ollamaConnectTimeout=")) {
+                    config.ollamaConnectTimeoutMs = parsePositiveInt(arg.split("=")[1], config.ollamaConnectTimeoutMs, "ollamaConnectTimeout");
+                }
+                if (arg.startsWith("--ollamaTimeout=")) {
+                    config.ollamaTimeoutMs = parsePositiveInt(arg.split("=")[1], config.ollamaTimeoutMs, "ollamaTimeout");
+                }
+                if (arg.startsWith("--ollamaMaxInFlight=")) {
+                    config.ollamaMaxInFlight = parsePositiveInt(arg.split("=")[1], config.ollamaMaxInFlight, "ollamaMaxInFlight");
+                }
+                if (arg.startsWith("--threads=")) {
+                    config.threads = parsePositiveInt(arg.split("=")[1], config.threads, "threads");
+                }
+                if (arg.startsWith("--dicomInPlace=")) {
+                    config.dicomInPlace = Boolean.parseBoolean(arg.split("=")[1]);
+                }
+                if (arg.startsWith("--renderInPlace=")) {
+                    config.renderInPlace = Boolean.parseBoolean(arg.split("=")[1]);
+                }
+                if (arg.startsWith("--warmTesseract=")) {
+                    config.warmTesseract = Boolean.parseBoolean(arg.split("=")[1]);
+                }
+                if (arg.startsWith("--mergeRegions=")) {
+                    String mode = arg.split("=")[1].toUpperCase();
+                    try {
+                        config.mergeRegions = RegionMerger.Mode.valueOf(mode);
+                    } catch (IllegalArgumentException e) {
+                        System.err.println("Invalid value for mergeRegions: " + mode + ". Using default value: " + config.mergeRegions);
+                    }
+                }
+                if (arg.startsWith("--mergePadding=")) {
+                    config.mergePadding = parseIntInRange(arg.split("=")[1], 0, 1024, config.mergePadding, "mergePadding");
+                }
+                if (arg.startsWith("--outputThreads=")) {
+                    config.outputThreads = parseIntInRange(arg.split("=")[1], 0, 256, config.outputThreads, "outputThreads");
+                }
+                if (arg.startsWith("--outputQueue=")) {
+                    config.outputQueue = parsePositiveInt(arg.split("=")[1], config.outputQueue, "outputQueue");
+                }
+                if (arg.startsWith("--pngLevel=")) {
+                    config.pngLevel = parseIntInRange(arg.split("=")[1], 0, 9, config.pngLevel, "pngLevel");
+                }
+                if (arg.startsWith("--tiling=")) {
+                    config.tiling = Boolean.parseBoolean(arg.split("=")[1]);
+                }
+                if (arg.startsWith("--tileSize=")) {
+                    config.tileSize = parsePositiveInt(arg.split("=")[1], config.tileSize, "tileSize");
+                }
+                if (arg.startsWith("--tileOverlap=")) {
+                    config.tileOverlap = parsePositiveInt(arg.split("=")[1], config.tileOverlap, "tileOverlap");
+                }
+                if (arg.startsWith("--tileThreads=")) {
+                    config.tileThreads = parsePositiveInt(arg.split("=")[1], config.tileThreads, "tileThreads");
+                }
+                if (arg.startsWith("--roiProfiles=")) {
+                    config.roiProfiles = arg.split("=")[1];
+                }
+                if (arg.startsWith("--roiFallback=")) {
+                    config.roiFallback = Boolean.parseBoolean(arg.split("=")[1]);
+                }
+                if (arg.startsWith("--triage=")) {
+                    config.triage = Boolean.parseBoolean(arg.split("=")[1]);
+                }
+                if (arg.startsWith("--triageMinStrokes=")) {
+                    config.triageMinStrokes = parsePositiveInt(arg.split("=")[1], config.triageMinStrokes, "triageMinStrokes");
+                }
+                if (arg.startsWith("--triageAuditEvery=")) {
+                    config.triageAuditEvery = parsePositiveInt(arg.split("=")[1], config.triageAuditEvery, "triageAuditEvery");
+                }
+                if (arg.startsWith("--ocrPreprocess=")) {
+                    config.ocrPreprocess = Boolean.parseBoolean(arg.split("=")[1]);
+                }
+                if (arg.startsWith("--ocrScale=")) {
+                    config.ocrScale = parsePositiveDouble(arg.split("=")[1], config.ocrScale, "ocrScale");
+                }
+                if (arg.startsWith("--ocrBinarize=")) {
+                    config.ocrBinarize = Boolean.parseBoolean(arg.split("=")[1]);
+                }
+                if (arg.startsWith("--ocrThresholdWindow=")) {
+                    config.ocrThresholdWindow = parsePositiveInt(arg.split("=")[1], config.ocrThresholdWindow, "ocrThresholdWindow");
+                }
+                if (arg.startsWith("--frameThreads=")) {
+                    config.frameThreads = parsePositiveInt(arg.split("=")[1], config.frameThreads, "frameThreads");
+                }
+                if (arg.startsWith("--scheduleWindow=")) {
+                    config.scheduleWindow = parsePositiveInt(arg.split("=")[1], config.scheduleWindow, "scheduleWindow");
+                }
+                if (arg.startsWith("--recursive=")) {
+                    config.recursive = Boolean.parseBoolean(arg.split("=")[1]);
+                }
+                if (arg.startsWith("--dicomdir=")) {
+                    config.useDicomdir = Boolean.parseBoolean(arg.split("=")[1]);
+                }
+                if (arg.startsWith("--pipeline=")) {
+                    config.pipeline = Boolean.parseBoolean(arg.split("=")[1]);
+                }
+                if (arg.startsWith("--decodeThreads=")) {
+                    config.decodeThreads = parsePositiveInt(arg.split("=")[1], config.decodeThreads, "decodeThreads");
+                }
+                if (arg.startsWith("--actThreads=")) {
+                    config.actThreads = parsePositiveInt(arg.split("=")[1], config.actThreads, "actThreads");
+                }
+                if (arg.startsWith("--writeThreads=")) {
+                    config.writeThreads = parsePositiveInt(arg.split("=")[1], config.writeThreads, "writeThreads");
+                }
+                if (arg.startsWith("--resume=")) {
+                    config.resume = Boolean.parseBoolean(arg.split("=")[1]);
+                }
+                if (arg.startsWith("--journalSyncEvery=")) {
+                    config.journalSyncEvery = parsePositiveInt(arg.split("=")[1], config.journalSyncEvery, "journalSyncEvery");
+                }
+                if (arg.startsWith("--cacheDir=")) {
+                    config.cacheDir = arg.split("=")[1];
+                }
+                if (arg.startsWith("--cacheMaxMB=")) {
+                    config.cacheMaxMB = parsePositiveInt(arg.split("=")[1], config.cacheMaxMB, "cacheMaxMB");
+                }
+                if (arg.startsWith("--reportFormat=")) {
+                    String format = arg.split("=")[1].toLowerCase();
+                    if (format.equals("text") || format.equals("jsonl")) {
+                        config.reportFormat = format;
+                    } else {
+                        System.err.println("Invalid value for reportFormat: " + format + ". Using default value: " + config.reportFormat);
+                    }
+                }
+                if (arg.startsWith("--reportQueue=")) {
+                    config.reportQueue = parsePositiveInt(arg.split("=")[1], config.reportQueue, "reportQueue");
+                }
+                if (arg.startsWith("--metrics=")) {
+                    config.metrics = Boolean.parseBoolean(arg.split("=")[1]);
+                }
+                if (arg.startsWith("--metricsInterval=")) {
+                    config.metricsInterval = parsePositiveInt(arg.split("=")[1], config.metricsInterval, "metricsInterval");
+                }
+                if (arg.startsWith("--metricsPort=")) {
+                    config.metricsPort = parsePositiveInt(arg.split("=")[1], config.metricsPort, "metricsPort");
+                }
+                if (arg.startsWith("--serve=")) {
+                    config.servePort = parsePositiveInt(arg.split("=")[1], config.servePort, "serve");
+                }
+                if (arg.startsWith("--serveMaxInFlight=")) {
+                    config.serveMaxInFlight = parsePositiveInt(arg.split("=")[1], config.serveMaxInFlight, "serveMaxInFlight");
+                }
+                if (arg.startsWith("--receive=")) {
+                    config.receivePort = parsePositiveInt(arg.split("=")[1], config.receivePort, "receive");
+                }
+                if (arg.startsWith("--receiveAET=")) {
+                    config.receiveAET = arg.split("=")[1];
+                }
+                if (arg.startsWith("--queueCapacity=")) {
+                    config.queueCapacity = parsePositiveInt(arg.split("=")[1], config.queueCapacity, "queueCapacity");
+                }
             }
 
             // Additional validation for logical bounds
@@ -45,6 +243,11 @@ public class DetectorConfig {
                 config.minHeight = 10;
                 config.maxHeight = 500;
             }
+            if (config.renderInPlace && config.enableOllama) {
+                // The Ollama request may still be encoding the image while actions run
+                System.err.println("Warning: renderInPlace is not supported with ollama. Rendering to copies.");
+                config.renderInPlace = false;
+            }
         } catch (Exception e) {
             System.err.println("Error parsing configuration arguments: " + e.getMessage());
             System.err.println("Using default configuration values.");
@@ -52,6 +255,34 @@ public class DetectorConfig {
         return config;
     }
 
+    // Helper method to parse and validate positive decimals
+    private static double parsePositiveDouble(String value, double defaultValue, String paramName) {
+        try {
+            double parsedValue = Double.parseDouble(value);
+            if (!(parsedValue > 0) || Double.isInfinite(parsedValue)) {
+                throw new IllegalArgumentException(paramName + " must be a positive number.");
+            }
+            return parsedValue;
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid value for " + paramName + ": " + value + ". Using default value: " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    // Helper method to parse integers within [min, max]
+    private static int parseIntInRange(String value, int min, int max, int defaultValue, String paramName) {
+        try {
+            int parsedValue = Integer.parseInt(value);
+            if (parsedValue < min || parsedValue > max) {
+                throw new IllegalArgumentException(paramName + " must be between " + min + " and " + max + ".");
+            }
+            return parsedValue;
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid value for " + paramName + ": " + value + ". Using default value: " + defaultValue);
+            return defaultValue;
+        }
+    }
+
     // Helper method to parse and validate positive integers
     private static int parsePositiveInt(String value, int defaultValue, String paramName) {
         try {
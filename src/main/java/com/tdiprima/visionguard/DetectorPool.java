@@ -0,0 +1,53 @@
+package com.tdiprima.visionguard;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Supplier;
+
+/**
+ * A fixed-size pool of independently configured detectors. A tess4j
+ * {@code Tesseract} handle is not thread-safe, so each worker borrows its own
+ * detector for the duration of one file and returns it afterwards.
+ *
+ * @author tdiprima
+ */
+public class DetectorPool implements AutoCloseable {
+
+    private final BlockingQueue<TextDetector> available;
+    private final List<TextDetector> detectors;
+
+    public DetectorPool(int size, Supplier<TextDetector> factory) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Pool size must be a positive integer.");
+        }
+        this.available = new ArrayBlockingQueue<>(size);
+        this.detectors = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            TextDetector detector = factory.get();
+            detectors.add(detector);
+            available.add(detector);
+        }
+    }
+
+    // Block until a detector is free
+    public TextDetector borrow() throws InterruptedException {
+        return available.take();
+    }
+
+    public void release(TextDetector detector) {
+        available.add(detector);
+    }
+
+    public int size() {
+        return detectors.size();
+    }
+
+    @Override
+    public void close() {
+        for (TextDetector detector : detectors) {
+            detector.close();
+        }
+    }
+}
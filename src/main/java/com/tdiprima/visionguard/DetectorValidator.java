@@ -2,9 +2,13 @@ package com.tdiprima.visionguard;
 
 import com.tdiprima.visionguard.TextDetector.DetectionResult;
 import com.tdiprima.visionguard.TextDetector.TextRegion;
+import com.google.gson.stream.JsonWriter;
 import java.io.BufferedWriter;
+import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.StringWriter;
+import java.time.Instant;
 import java.util.List;
 
 /**
@@ -16,7 +20,8 @@ import java.util.List;
  */
 public class DetectorValidator {
 
-    public static void validate(DetectionResult tesseractResult, DetectionResult ollamaResult, String reportPath) {
+    // Returns false if the report could not be written
+    public static boolean validate(DetectionResult tesseractResult, DetectionResult ollamaResult, String reportPath) {
         try (BufferedWriter writer = new BufferedWriter(new FileWriter(reportPath))) {
             writer.write("*** Tesseract Detected Regions ***\n\n");
             if (tesseractResult.regions != null && !tesseractResult.regions.isEmpty()) {
@@ -53,7 +58,9 @@ public class DetectorValidator {
 
         } catch (IOException e) {
             e.printStackTrace();
+            return false;
         }
+        return true;
     }
 
     private static List<String> extractTextFromOllamaResponse(String rawResponse) {
@@ -66,39 +73,91 @@ public class DetectorValidator {
             return;
         }
 
-    // Extract and filter Ollama texts
-    List<String> ollamaTexts = extractTextFromOllamaResponse(ollamaResult.rawResponse).stream()
-            .filter(text -> !text.trim().isEmpty()) // Exclude empty strings
-            .filter(text -> !text.startsWith("The text in the image is:")) // Exclude predefined phrases
-            .toList();
+        TextMatcher.Result match = compare(tesseractResult.regions, filterOllamaTexts(ollamaResult.rawResponse));
 
         writer.write("\n\n*** Comparison of Tesseract and Ollama Results ***\n\n");
 
         // Check Tesseract detections against Ollama results
         writer.write("Texts detected by Tesseract but not matched in Ollama:\n");
-        for (TextRegion tesseractRegion : tesseractResult.regions) {
-            String tesseractText = tesseractRegion.text.trim();
-            boolean matchFound = ollamaTexts.stream().anyMatch(ollamaText -> ollamaText.contains(tesseractText));
-
-            if (!matchFound) {
-                writer.write(String.format("%s\n", tesseractText));
-            }
+        for (String tesseractText : match.unmatchedTesseract) {
+            writer.write(String.format("%s\n", tesseractText));
         }
 
         // Check Ollama detections against Tesseract results
         writer.write("\nTexts detected by Ollama but not matched in Tesseract:\n");
-        List<String> tesseractTexts = tesseractResult.regions.stream()
-                .map(region -> region.text.trim())
+        for (String ollamaText : match.unmatchedOllama) {
+            writer.write(String.format("%s\n", ollamaText));
+        }
+
+        writer.write(String.format("%nMatches: %d exact, %d fuzzy%n", match.exactMatches, match.fuzzyMatches));
+        writer.write(String.format("Agreement: %.2f (Tesseract %.2f, Ollama %.2f)%n",
+                match.agreement, match.tesseractAgreement, match.ollamaAgreement));
+
+        writer.write("\n*** End of Comparison ***\n");
+    }
+
+    // Extract and filter Ollama texts
+    private static List<String> filterOllamaTexts(String rawResponse) {
+        return extractTextFromOllamaResponse(rawResponse).stream()
+                .filter(text -> !text.trim().isEmpty()) // Exclude empty strings
+                .filter(text -> !text.startsWith("The text in the image is:")) // Exclude predefined phrases
                 .toList();
-        for (String ollamaText : ollamaTexts) {
-            boolean matchFound = tesseractTexts.stream().anyMatch(tesseractText -> ollamaText.contains(tesseractText));
+    }
+
+    private static TextMatcher.Result compare(List<TextRegion> regions, List<String> ollamaTexts) {
+        return TextMatcher.match(regions.stream().map(region -> region.text).toList(), ollamaTexts);
+    }
 
-            if (!matchFound) {
-                writer.write(String.format("%s\n", ollamaText));
+    // One JSON object on a single line, for the consolidated report stream
+    public static String toJsonLine(File file, String name, DetectionResult tesseractResult, DetectionResult ollamaResult) {
+        StringWriter out = new StringWriter(512);
+        try (JsonWriter json = new JsonWriter(out)) {
+            json.beginObject();
+            json.name("file").value(file.getAbsolutePath());
+            json.name("name").value(name);
+            json.name("processedAt").value(Instant.now().toString());
+
+            List<TextRegion> regions = tesseractResult.regions != null ? tesseractResult.regions : List.of();
+            json.name("regions").beginArray();
+            for (TextRegion region : regions) {
+                json.beginObject()
+                        .name("x").value(region.x)
+                        .name("y").value(region.y)
+                        .name("width").value(region.width)
+                        .name("height").value(region.height)
+                        .name("text").value(region.text.trim())
+                        .endObject();
+            }
+            json.endArray();
+
+            if (ollamaResult != null && ollamaResult.rawResponse != null) {
+                List<String> ollamaTexts = filterOllamaTexts(ollamaResult.rawResponse);
+                TextMatcher.Result match = compare(regions, ollamaTexts);
+                json.name("ollamaResponse").value(ollamaResult.rawResponse);
+                writeStrings(json, "ollamaTexts", ollamaTexts);
+                writeStrings(json, "unmatchedTesseract", match.unmatchedTesseract);
+                writeStrings(json, "unmatchedOllama", match.unmatchedOllama);
+                json.name("exactMatches").value(match.exactMatches);
+                json.name("fuzzyMatches").value(match.fuzzyMatches);
+                json.name("agreement").value(match.agreement);
+                json.name("tesseractAgreement").value(match.tesseractAgreement);
+                json.name("ollamaAgreement").value(match.ollamaAgreement);
+            } else {
+                json.name("ollamaResponse").nullValue(); // Skipped or no answer
             }
+            json.endObject();
+        } catch (IOException e) {
+            throw new IllegalStateException("Writing to a StringWriter failed", e);
         }
+        return out.toString();
+    }
 
-        writer.write("\n*** End of Comparison ***\n");
+    private static void writeStrings(JsonWriter json, String name, List<String> values) throws IOException {
+        json.name(name).beginArray();
+        for (String value : values) {
+            json.value(value);
+        }
+        json.endArray();
     }
 
 }
@@ -0,0 +1,123 @@
+package com.tdiprima.visionguard;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.UID;
+import org.dcm4che3.io.DicomOutputStream;
+import org.dcm4che3.net.ApplicationEntity;
+import org.dcm4che3.net.Association;
+import org.dcm4che3.net.Connection;
+import org.dcm4che3.net.Device;
+import org.dcm4che3.net.PDVInputStream;
+import org.dcm4che3.net.Status;
+import org.dcm4che3.net.TransferCapability;
+import org.dcm4che3.net.pdu.PresentationContext;
+import org.dcm4che3.net.service.BasicCEchoSCP;
+import org.dcm4che3.net.service.BasicCStoreSCP;
+import org.dcm4che3.net.service.DicomServiceException;
+import org.dcm4che3.net.service.DicomServiceRegistry;
+
+/**
+ * A DICOM storage SCP that redacts instances as they arrive. Each received
+ * dataset is assembled in memory and goes through the same steps as a file
+ * from the input directory, so only the redacted outputs and the report are
+ * written. Accepts any storage SOP class and transfer syntax, plus C-ECHO.
+ * An instance with no text is stored unchanged next to the redacted ones. A
+ * failed instance, including one whose pixels can't be decoded, is answered
+ * with a Processing Failure status so the sender knows it was not stored.
+ *
+ * @author tdiprima
+ */
+public class DicomReceiver implements AutoCloseable {
+
+    private final FileProcessor processor;
+    private final DetectorPool detectors;
+    private final Device device = new Device("visionguard");
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor(); // One per association
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    public DicomReceiver(FileProcessor processor, DetectorPool detectors, String aeTitle, int port) throws IOException {
+        this.processor = processor;
+        this.detectors = detectors;
+
+        Connection connection = new Connection();
+        connection.setPort(port);
+        ApplicationEntity ae = new ApplicationEntity(aeTitle);
+        ae.setAssociationAcceptor(true);
+        ae.addConnection(connection);
+        ae.addTransferCapability(new TransferCapability(null, "*", TransferCapability.Role.SCP, "*"));
+
+        DicomServiceRegistry services = new DicomServiceRegistry();
+        services.addDicomService(new BasicCEchoSCP());
+        services.addDicomService(new BasicCStoreSCP("*") {
+            @Override
+            protected void store(Association as, PresentationContext pc, Attributes rq, PDVInputStream data, Attributes rsp)
+                    throws IOException {
+                receive(as, pc, rq, data);
+            }
+        });
+        ae.setDimseRQHandler(services);
+
+        device.addConnection(connection);
+        device.addApplicationEntity(ae);
+        device.setExecutor(executor);
+        device.setScheduledExecutor(scheduler);
+        try {
+            device.bindConnections();
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Failed to bind DICOM port " + port, e);
+        }
+        System.out.println("Receiving DICOM as " + aeTitle + " on port " + port);
+    }
+
+    private void receive(Association as, PresentationContext pc, Attributes rq, PDVInputStream data) throws IOException {
+        String cuid = rq.getString(Tag.AffectedSOPClassUID);
+        String iuid = rq.getString(Tag.AffectedSOPInstanceUID);
+        String name = iuid + ".dcm";
+
+        // Part 10 in memory, as storescp would write it to disk
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DicomOutputStream out = new DicomOutputStream(bytes, UID.ExplicitVRLittleEndian)) {
+            out.writeFileMetaInformation(as.createFileMetaInformation(iuid, cuid, pc.getTransferSyntax()));
+            data.copyTo(out);
+        }
+
+        TextDetector detector;
+        try {
+            detector = detectors.borrow();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DicomServiceException(Status.OutOfResources, e);
+        }
+        try {
+            processor.process(ByteBuffer.wrap(bytes.toByteArray()), name, detector);
+        } catch (IOException | RuntimeException e) {
+            processor.failed(new File(name), e);
+            throw new DicomServiceException(Status.ProcessingFailure, e);
+        } finally {
+            detectors.release(detector);
+        }
+    }
+
+    // Stops accepting associations and waits briefly for those in progress
+    @Override
+    public void close() {
+        device.unbindConnections();
+        executor.shutdown();
+        try {
+            executor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        scheduler.shutdownNow();
+    }
+}
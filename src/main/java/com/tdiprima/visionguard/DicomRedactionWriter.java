@@ -0,0 +1,211 @@
+package com.tdiprima.visionguard;
+
+import com.tdiprima.visionguard.DICOMImageReader.DicomImage;
+import com.tdiprima.visionguard.TextDetector.TextRegion;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Logger;
+import javax.imageio.stream.ImageInputStream;
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.BulkData;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.UID;
+import org.dcm4che3.data.VR;
+import org.dcm4che3.io.DicomOutputStream;
+import org.dcm4che3.util.UIDUtils;
+
+/**
+ * Redacts text regions directly in the stored pixel data of a DICOM object.
+ * The source dataset is copied as-is and the pixel data is streamed frame by
+ * frame, with only the covered rectangles overwritten in the original bit
+ * depth and photometric interpretation. Nothing is decoded or re-encoded, so
+ * the output is about the size of the input. Elements that sort after the
+ * pixel data, such as private groups 7FE1 and up, are written after it.
+ *
+ * Only uncompressed little-endian pixel data in MONOCHROME1, MONOCHROME2 or
+ * RGB with 8 or 16 bits allocated, and under 2 GiB, is handled; callers fall back to
+ * {@link DICOMImageReader#saveBufferedImageAsDICOM} for anything else.
+ *
+ * @author tdiprima
+ */
+public class DicomRedactionWriter {
+
+    private static final Logger logger = Logger.getLogger(DicomRedactionWriter.class.getName());
+
+    private static final Set<String> NATIVE_TRANSFER_SYNTAXES = Set.of(
+            UID.ImplicitVRLittleEndian, UID.ExplicitVRLittleEndian);
+    private static final Set<String> PHOTOMETRICS = Set.of("MONOCHROME1", "MONOCHROME2", "RGB");
+
+    // What the redacted pixels look like on screen
+    public enum Fill {
+        BLACK,
+        WHITE
+    }
+
+    // Returns false, without writing anything, if the source can't be redacted in place
+    public static boolean write(DicomImage source, List<TextRegion> regions, Fill fill, File outputFile) throws IOException {
+        Attributes attrs = source.getAttributes();
+        String transferSyntax = source.getFileMetaInformation() != null
+                ? source.getFileMetaInformation().getString(Tag.TransferSyntaxUID) : null;
+        String photometric = attrs.getString(Tag.PhotometricInterpretation, "");
+        int bitsAllocated = attrs.getInt(Tag.BitsAllocated, 8);
+        Object pixelData = attrs.getValue(Tag.PixelData);
+
+        if (!NATIVE_TRANSFER_SYNTAXES.contains(transferSyntax) || !PHOTOMETRICS.contains(photometric)
+                || (bitsAllocated != 8 && bitsAllocated != 16)
+                || !(pixelData instanceof BulkData || pixelData instanceof byte[])) {
+            logger.fine("In-place redaction not supported for " + outputFile.getName() + ", re-encoding instead.");
+            return false;
+        }
+
+        PixelLayout layout = new PixelLayout(attrs, source.getNumFrames(), fill);
+        if (!layout.fits()) {
+            logger.fine("Pixel data of " + outputFile.getName() + " is too large to stream, re-encoding instead.");
+            return false;
+        }
+
+        // Copy every element except the pixel data, which is streamed below with a new instance UID
+        Attributes dataset = new Attributes(attrs);
+        dataset.remove(Tag.PixelData);
+        dataset.remove(Tag.DataSetTrailingPadding);
+        dataset.remove(Tag.DigitalSignaturesSequence); // No longer valid once pixels change
+        dataset.setString(Tag.SOPInstanceUID, VR.UI, UIDUtils.createUID());
+        Attributes trailing = splitTrailing(dataset);
+
+        OutputWriter.writeAtomically(outputFile, out -> {
+            try (DicomOutputStream dos = new DicomOutputStream(out, UID.ExplicitVRLittleEndian)) {
+                dos.writeDataset(dataset.createFileMetaInformation(transferSyntax), dataset);
+                dos.writeHeader(Tag.PixelData, bitsAllocated == 16 ? VR.OW : VR.OB, layout.paddedLength());
+
+                byte[] frame = new byte[layout.frameLength];
+                for (int f = 0; f < layout.numFrames; f++) {
+                    readFrame(source.getInput(), pixelData, f, frame);
+                    layout.redact(frame, regions);
+                    dos.write(frame);
+                }
+                if (layout.paddedLength() != layout.totalLength()) {
+                    dos.write(0); // Values are padded to an even length
+                }
+                if (!trailing.isEmpty()) {
+                    dos.writeDataset(null, trailing); // Keeps ascending tag order
+                }
+            }
+        });
+        return true;
+    }
+
+    // Moves the elements that sort after the pixel data out of the dataset
+    private static Attributes splitTrailing(Attributes dataset) throws IOException {
+        Attributes trailing = new Attributes();
+        List<Integer> tags = new ArrayList<>();
+        try {
+            dataset.accept((attrs, tag, vr, value) -> {
+                if (Integer.compareUnsigned(tag, Tag.PixelData) > 0) { // Tags are unsigned
+                    trailing.setValue(tag, vr, value);
+                    tags.add(tag);
+                }
+                return true;
+            }, false);
+        } catch (Exception e) {
+            throw new IOException("Failed to copy elements after the pixel data", e);
+        }
+        for (int tag : tags) {
+            dataset.remove(tag);
+        }
+        return trailing;
+    }
+
+    private static void readFrame(ImageInputStream input, Object pixelData, int index, byte[] frame) throws IOException {
+        long offset = (long) index * frame.length;
+        if (pixelData instanceof byte[] bytes) {
+            System.arraycopy(bytes, (int) offset, frame, 0, frame.length);
+        } else {
+            synchronized (input) { // Shared when several actions write from the same source
+                input.seek(((BulkData) pixelData).offset() + offset);
+                input.readFully(frame);
+            }
+        }
+    }
+
+    // Geometry of the stored pixel data and the stored value to fill with
+    private static class PixelLayout {
+
+        final int rows;
+        final int columns;
+        final int samplesPerPixel;
+        final int bytesPerSample;
+        final boolean planar;
+        final int numFrames;
+        final int frameLength;
+        final long totalLength;
+        final int fillValue;
+
+        PixelLayout(Attributes attrs, int numFrames, Fill fill) {
+            this.rows = attrs.getInt(Tag.Rows, 0);
+            this.columns = attrs.getInt(Tag.Columns, 0);
+            this.samplesPerPixel = attrs.getInt(Tag.SamplesPerPixel, 1);
+            this.bytesPerSample = attrs.getInt(Tag.BitsAllocated, 8) / 8;
+            this.planar = samplesPerPixel > 1 && attrs.getInt(Tag.PlanarConfiguration, 0) == 1;
+            this.numFrames = numFrames;
+            long frameBytes = (long) rows * columns * samplesPerPixel * bytesPerSample;
+            this.totalLength = frameBytes * numFrames;
+            this.frameLength = (int) frameBytes; // Only used once fits() holds
+
+            int bitsStored = attrs.getInt(Tag.BitsStored, bytesPerSample * 8);
+            boolean signed = attrs.getInt(Tag.PixelRepresentation, 0) == 1;
+            int min = signed ? -(1 << (bitsStored - 1)) : 0;
+            int max = signed ? (1 << (bitsStored - 1)) - 1 : (1 << bitsStored) - 1;
+            // MONOCHROME1 shows its minimum value as white
+            boolean inverted = "MONOCHROME1".equals(attrs.getString(Tag.PhotometricInterpretation));
+            this.fillValue = (fill == Fill.BLACK) != inverted ? min : max;
+        }
+
+        // The padded length must fit the int length of the pixel data header
+        boolean fits() {
+            return totalLength < Integer.MAX_VALUE;
+        }
+
+        long totalLength() {
+            return totalLength;
+        }
+
+        int paddedLength() {
+            return (int) ((totalLength + 1) & ~1L);
+        }
+
+        void redact(byte[] frame, List<TextRegion> regions) {
+            byte low = (byte) fillValue;
+            byte high = (byte) (fillValue >> 8);
+            for (TextRegion region : regions) {
+                int x0 = Math.max(region.x, 0);
+                int y0 = Math.max(region.y, 0);
+                int x1 = Math.min(region.x + region.width, columns);
+                int y1 = Math.min(region.y + region.height, rows);
+                if (x0 >= x1 || y0 >= y1) {
+                    continue;
+                }
+
+                for (int plane = 0; plane < (planar ? samplesPerPixel : 1); plane++) {
+                    int planeOffset = plane * rows * columns * bytesPerSample;
+                    int samplesPerRowPixel = planar ? 1 : samplesPerPixel;
+                    for (int y = y0; y < y1; y++) {
+                        int start = planeOffset + (y * columns + x0) * samplesPerRowPixel * bytesPerSample;
+                        int end = planeOffset + (y * columns + x1) * samplesPerRowPixel * bytesPerSample;
+                        if (bytesPerSample == 1) {
+                            Arrays.fill(frame, start, end, low);
+                        } else {
+                            for (int i = start; i < end; i += 2) {
+                                frame[i] = low;
+                                frame[i + 1] = high;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,511 @@
+package com.tdiprima.visionguard;
+
+import com.tdiprima.visionguard.TextDetector.DetectionResult;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+import javax.imageio.ImageIO;
+
+/**
+ * Runs a single input file through decoding, detection, actions and reporting.
+ * Shared by the sequential loop, the parallel batch runner and the staged
+ * pipeline so every mode handles a file the same way.
+ *
+ * @author tdiprima
+ */
+public class FileProcessor implements AutoCloseable {
+
+    private static final Logger logger = Logger.getLogger(FileProcessor.class.getName());
+
+    private final OllamaLane ollamaLane;
+    private final DetectionCache cache;
+    private final BatchJournal journal;
+    private final ReportSink reportSink;
+    private final OutputWriter outputWriter;
+    private final MultiFrameDetector multiFrameDetector;
+    private final RoiProfiles roiProfiles;
+    private final RegionMerger merger; // Null to keep word boxes
+    private final TextTriage triage;
+    private final List<TextDetector.Action> actions;
+    private final ExecutorService actionExecutor;
+    private final Metrics metrics = new Metrics();
+    private final MetricsExporter metricsExporter;
+    private final File inputRoot;
+    private final String outputPath;
+    private final String reportPath;
+
+    public FileProcessor(DetectorConfig config, OllamaLane ollamaLane, Supplier<TextDetector> tesseractFactory,
+            List<TextDetector.Action> actions, File inputRoot, String outputPath, String reportPath) throws IOException {
+        this.ollamaLane = ollamaLane;
+        this.cache = createCache(config);
+        this.journal = new BatchJournal(new File(reportPath), config.resume, config.journalSyncEvery);
+        this.reportSink = ReportSink.create(config, new File(reportPath));
+        this.outputWriter = OutputWriter.fromConfig(config);
+        this.multiFrameDetector = new MultiFrameDetector(
+                config.frameThreads > 1 ? new DetectorPool(config.frameThreads, tesseractFactory) : null);
+        this.merger = RegionMerger.fromConfig(config);
+        this.roiProfiles = config.roiProfiles != null
+                ? RoiProfiles.load(Path.of(config.roiProfiles), config.roiFallback) : null;
+        this.triage = config.triage
+                ? new TextTriage(config.triageMinStrokes, config.triageAuditEvery, new File(reportPath)) : null;
+        this.actions = actions;
+        // Actions render to their own copies, so several can run at once on the same decoded image
+        this.actionExecutor = actions.size() > 1 ? Executors.newVirtualThreadPerTaskExecutor() : null;
+        this.inputRoot = inputRoot;
+        this.outputPath = outputPath;
+        this.reportPath = reportPath;
+        this.metricsExporter = config.metrics || config.metricsPort > 0
+                ? new MetricsExporter(metrics, new File(reportPath), config.metricsInterval, config.metricsPort) : null;
+
+        for (TextDetector.Action action : actions) {
+            File actionOutput = new File(outputPathFor(action));
+            if (!actionOutput.exists() && !actionOutput.mkdirs()) {
+                throw new IOException("Failed to create output folder: " + actionOutput);
+            }
+        }
+    }
+
+    // With several actions, each writes to its own subfolder, e.g. output/MASK
+    private String outputPathFor(TextDetector.Action action) {
+        return actions.size() == 1 ? outputPath : new File(outputPath, action.name()).getPath();
+    }
+
+    private static DetectionCache createCache(DetectorConfig config) {
+        if (config.cacheDir == null) {
+            return null;
+        }
+        try {
+            return new DetectionCache(new File(config.cacheDir), config.cacheMaxMB * 1024L * 1024L);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Detection cache disabled: {0}", e.getMessage());
+            return null;
+        }
+    }
+
+    // Per-file state handed from one processing step to the next
+    public static class Work {
+
+        public final File file;
+        public String name; // Name used for outputs and reports
+        public boolean isDicom;
+        public BufferedImage image;
+        public DICOMImageReader.DicomImage dicom; // Open until the actions have run
+        public String pixelHash;
+        public RoiProfiles.Profile roi; // Null to OCR the whole frame
+        public DetectionResult tesseractResult;
+        public DetectionResult ollamaResult;
+        public CompletableFuture<DetectionResult> ollamaRequest;
+
+        public Work(File file) {
+            this.file = file;
+        }
+
+        // Close the DICOM source once nothing needs its header or frames
+        public void release() {
+            if (dicom == null) {
+                return;
+            }
+            try {
+                dicom.close();
+            } catch (IOException e) {
+                logger.log(Level.FINE, "Failed to close {0}: {1}", new Object[]{file.getName(), e.getMessage()});
+            }
+            dicom = null;
+        }
+    }
+
+    // Process one file with the given Tesseract detector (not shared between threads)
+    public void process(File file, TextDetector tesseractDetector) throws IOException {
+        Work work = decodeStep(file);
+        if (work != null) {
+            processDecoded(work, tesseractDetector);
+        }
+    }
+
+    // Same as process(File, ...), for a DICOM object that is already in memory. There is no other
+    // copy, so an object with no text is stored unchanged and one that can't be decoded is an error.
+    public void process(ByteBuffer dicom, String name, TextDetector tesseractDetector) throws IOException {
+        Work work = decodeStep(dicom.duplicate(), name);
+        if (!processDecoded(work, tesseractDetector)) {
+            storeUnchanged(dicom, work.name);
+        }
+    }
+
+    // Returns false if there was no text, so no actions ran
+    private boolean processDecoded(Work work, TextDetector tesseractDetector) throws IOException {
+        try {
+            if (!detectStep(work, tesseractDetector)) {
+                return false;
+            }
+            actStep(work, tesseractDetector);
+        } finally {
+            work.release(); // Already done unless a step threw
+        }
+        finishStep(work);
+        return true;
+    }
+
+    // A copy per action folder, where the redacted objects would have gone
+    private void storeUnchanged(ByteBuffer dicom, String name) throws IOException {
+        for (TextDetector.Action action : actions) {
+            OutputWriter.writeAtomically(new File(outputPathFor(action), name), out -> {
+                ByteBuffer bytes = dicom.duplicate();
+                WritableByteChannel channel = Channels.newChannel(out);
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+            });
+        }
+        System.out.println("No text to redact. Stored unchanged: " + name);
+    }
+
+    // Returns null if the file could not be decoded
+    public Work decodeStep(File file) throws IOException {
+        System.out.println("Processing file: " + file.getName());
+
+        long start = System.nanoTime();
+        Work work = new Work(file);
+        work.isDicom = isDicom(file);
+        work.name = outputName(file, work.isDicom);
+        work.image = work.isDicom ? decodeDicom(work) : ImageIO.read(file);
+        metrics.record(Metrics.Stage.DECODE, start);
+        metrics.add(Metrics.Counter.BYTES_READ, file.length());
+        if (work.image == null) {
+            System.out.println("Failed to load image. Skipping: " + file.getName());
+            skipped(file);
+            return null;
+        }
+        return work;
+    }
+
+    // A DICOM object received over the network; its name stands in for the file in reports and the journal
+    public Work decodeStep(ByteBuffer dicom, String name) throws IOException {
+        System.out.println("Processing object: " + name);
+
+        long start = System.nanoTime();
+        Work work = new Work(new File(name));
+        work.isDicom = true;
+        work.name = isDicomFileName(name) ? name : name + ".dcm";
+        metrics.add(Metrics.Counter.BYTES_READ, dicom.remaining());
+        work.dicom = DICOMImageReader.open(dicom, name);
+        work.image = readFirstFrame(work);
+        metrics.record(Metrics.Stage.DECODE, start);
+        if (work.image == null) {
+            // Not skipped: the object can't be checked, and it is stored nowhere else
+            work.release();
+            throw new IOException("No readable image in " + name);
+        }
+        return work;
+    }
+
+    // Parses the file once and keeps it open for the later steps
+    private static BufferedImage decodeDicom(Work work) throws IOException {
+        work.dicom = DICOMImageReader.open(work.file);
+        return readFirstFrame(work);
+    }
+
+    private static BufferedImage readFirstFrame(Work work) throws IOException {
+        try {
+            return work.dicom.readFrame(0);
+        } catch (IOException | RuntimeException e) {
+            work.release();
+            throw e;
+        }
+    }
+
+    // Returns false if no text was found and the remaining steps should be skipped
+    public boolean detectStep(Work work, TextDetector tesseractDetector) throws IOException {
+        boolean multiFrame = work.dicom != null && work.dicom.getNumFrames() > 1;
+        TextTriage.Decision triaged = triage != null && !multiFrame ? triage.decide(work.image) : TextTriage.Decision.OCR;
+        if (triaged == TextTriage.Decision.SKIP) {
+            System.out.println("No text by triage. Skipping OCR for: " + work.name);
+            skipped(work.file);
+            work.release();
+            return false;
+        }
+
+        long start = System.nanoTime();
+        if (cache != null) {
+            work.pixelHash = DetectionCache.pixelHash(work.image);
+        }
+
+        if (roiProfiles != null) {
+            work.roi = roiProfiles.select(work.dicom != null ? work.dicom.getAttributes() : null);
+        }
+
+        if (multiFrame) {
+            // Every frame is checked; the cache only covers single-frame images
+            work.tesseractResult = multiFrameDetector.detect(work.dicom, work.image, tesseractDetector, work.roi);
+        } else {
+            work.tesseractResult = detectCached(work, tesseractDetector);
+        }
+        if (work.tesseractResult.failed) {
+            // Not the same as no text: skipping would leave the file unredacted
+            work.release();
+            throw new IOException("Text detection failed for " + work.name);
+        }
+        if (merger != null) {
+            // After the cache, which keeps word boxes
+            work.tesseractResult.regions = merger.merge(work.tesseractResult.regions, work.image.getWidth(), work.image.getHeight());
+        }
+        metrics.record(Metrics.Stage.DETECT, start);
+        if (triaged == TextTriage.Decision.AUDIT) {
+            List<?> regions = work.tesseractResult.regions;
+            triage.recordAudit(work.file, work.image, regions != null ? regions.size() : 0);
+        }
+        if (work.tesseractResult.regions == null || work.tesseractResult.regions.isEmpty()) {
+            System.out.println("No valid text detected. Skipping actions for: " + work.name);
+            skipped(work.file);
+            work.release();
+            return false;
+        }
+        metrics.add(Metrics.Counter.REGIONS, work.tesseractResult.regions.size());
+        work.ollamaRequest = ollamaLane != null ? submitOllamaCached(work) : null;
+        return true;
+    }
+
+    private void skipped(File file) {
+        metrics.increment(Metrics.Counter.FILES_SKIPPED);
+        journal.record(file, BatchJournal.Status.SKIPPED, List.of());
+    }
+
+    private DetectionResult detectCached(Work work, TextDetector detector) {
+        if (cache == null) {
+            return detect(work, detector);
+        }
+        String key = DetectionCache.key(work.roi != null ? work.pixelHash + "|" + work.roi.fingerprint() : work.pixelHash, detector);
+        DetectionResult result = cache.get(key, work.image);
+        if (result == null) {
+            result = detect(work, detector);
+            if (!result.failed) { // A failed run found nothing, which must not be read back as no text
+                cache.put(key, result);
+            }
+        }
+        return result;
+    }
+
+    private static DetectionResult detect(Work work, TextDetector detector) {
+        return work.roi != null ? work.roi.detect(detector, work.image) : detector.detect(work.image);
+    }
+
+    private CompletableFuture<DetectionResult> submitOllamaCached(Work work) {
+        if (cache == null) {
+            return submitOllama(work);
+        }
+        String key = DetectionCache.key(work.pixelHash, ollamaLane.getDetector());
+        DetectionResult cached = cache.get(key, work.image);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return submitOllama(work).thenApply(result -> {
+            // An empty answer usually means the request failed, so don't keep it
+            if (result.rawResponse != null && !result.rawResponse.isEmpty()) {
+                cache.put(key, result);
+            }
+            return result;
+        });
+    }
+
+    private CompletableFuture<DetectionResult> submitOllama(Work work) {
+        long start = System.nanoTime();
+        return ollamaLane.submit(work.image).whenComplete((result, error) -> metrics.record(Metrics.Stage.OLLAMA, start));
+    }
+
+    public void actStep(Work work, TextDetector tesseractDetector) {
+        long start = System.nanoTime();
+        work.tesseractResult.dicomSource = work.dicom;
+        work.tesseractResult.outputWriter = outputWriter;
+        try {
+            if (actionExecutor == null) {
+                applyAction(actions.get(0), work, tesseractDetector);
+            } else {
+                CompletableFuture.allOf(actions.stream()
+                        .map(action -> CompletableFuture.runAsync(() -> applyAction(action, work, tesseractDetector), actionExecutor))
+                        .toArray(CompletableFuture[]::new)).join();
+            }
+        } finally {
+            work.tesseractResult.dicomSource = null; // Closed by release()
+            work.release();
+            metrics.record(Metrics.Stage.ACT, start);
+        }
+    }
+
+    private void applyAction(TextDetector.Action action, Work work, TextDetector tesseractDetector) {
+        String actionOutputPath = outputPathFor(action);
+        tesseractDetector.applyAction(action, work.tesseractResult, actionOutputPath, work.name);
+
+        if (ollamaLane != null) {
+            ollamaLane.getDetector().applyAction(action, work.tesseractResult, actionOutputPath, work.name);
+        }
+    }
+
+    // Write now if the Ollama answer is in, otherwise once it arrives
+    public void finishStep(Work work) {
+        if (work.ollamaRequest == null || work.ollamaRequest.isDone()) {
+            writeStep(work);
+            return;
+        }
+        ollamaLane.whenDone(work.ollamaRequest, () -> {
+            try {
+                writeStep(work);
+            } catch (RuntimeException e) {
+                failed(work.file, e);
+            }
+        });
+    }
+
+    public void writeStep(Work work) {
+        if (work.ollamaRequest != null) {
+            work.ollamaResult = work.ollamaRequest.join();
+        }
+        // The report and journal entry wait until the image outputs are on disk
+        outputWriter.whenWritten(work.name).whenComplete((written, error) -> {
+            try {
+                if (error != null) {
+                    failed(work.file, error instanceof Exception e ? e : new IOException(error));
+                } else {
+                    writeReport(work);
+                }
+            } catch (RuntimeException e) {
+                failed(work.file, e);
+            }
+        });
+    }
+
+    private void writeReport(Work work) {
+        long start = System.nanoTime();
+        List<String> outputs = outputsOf(work);
+        for (String output : outputs) {
+            File outputFile = new File(output);
+            if (outputFile.isFile()) {
+                metrics.add(Metrics.Counter.BYTES_WRITTEN, outputFile.length());
+            }
+        }
+        outputs.add(reportSink.location(work.name));
+
+        // Journaled as done only once the report is written
+        reportSink.write(work.file, work.name, work.tesseractResult, work.ollamaResult, reportBytes -> {
+            journal.record(work.file, BatchJournal.Status.DONE, outputs);
+            metrics.add(Metrics.Counter.BYTES_WRITTEN, reportBytes);
+            metrics.increment(Metrics.Counter.FILES_DONE);
+        });
+        metrics.record(Metrics.Stage.WRITE, start);
+        System.out.println("File processed: " + work.name);
+    }
+
+    // Same as failed(File, ...), also closing the file's DICOM source if a step left it open
+    public void failed(Work work, Throwable e) {
+        work.release();
+        failed(work.file, e);
+    }
+
+    // Errors are isolated per file: log, journal and move on
+    public void failed(File file, Throwable e) {
+        System.err.println("Error processing file: " + file.getName() + ". Skipping.");
+        e.printStackTrace();
+        metrics.increment(Metrics.Counter.FILES_FAILED);
+        journal.record(file, BatchJournal.Status.FAILED, List.of());
+    }
+
+    // Files finished by an earlier run, when resuming
+    public boolean isCompleted(File file) {
+        return journal.isCompleted(file);
+    }
+
+    // Action outputs; the report is added by the caller
+    private List<String> outputsOf(Work work) {
+        List<String> outputs = new ArrayList<>();
+        for (TextDetector.Action action : actions) {
+            String actionOutputPath = outputPathFor(action);
+            if (action == TextDetector.Action.EXPORT_TO_FOLDER) {
+                outputs.add(new File(actionOutputPath).getAbsolutePath()); // Timestamped names, so record the folder
+            } else {
+                outputs.add(new File(actionOutputPath, work.name).getAbsolutePath());
+            }
+            if (ollamaLane != null && action == TextDetector.Action.EXPORT_TO_FOLDER) {
+                outputs.add(new File(actionOutputPath, work.name + "_response.txt").getAbsolutePath());
+            }
+        }
+        return outputs;
+    }
+
+    // Wait for reports that are still waiting on Ollama answers
+    public void awaitPending() {
+        if (ollamaLane == null) {
+            return;
+        }
+        try {
+            ollamaLane.awaitIdle();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        awaitPending();
+        multiFrameDetector.close();
+        if (actionExecutor != null) {
+            actionExecutor.shutdown();
+        }
+        if (triage != null) {
+            triage.close();
+        }
+        outputWriter.close(); // Finishes queued images, whose reports follow
+        reportSink.close(); // Drains queued reports, which journal their files
+        journal.close();
+        if (metricsExporter != null) {
+            metricsExporter.close();
+        }
+    }
+
+    // Detect file type and preprocess DICOM if necessary
+    public static BufferedImage decode(File file) throws IOException {
+        if (isDicom(file)) {
+            return DICOMImageReader.readDICOMAsBufferedImage(file);
+        }
+        return ImageIO.read(file);
+    }
+
+    // By extension when there is one, otherwise by the DICM magic
+    public static boolean isDicom(File file) {
+        if (isDicomFileName(file.getName())) {
+            return true;
+        }
+        return !InputSource.hasImageExtension(file.getName()) && InputSource.isDicom(file);
+    }
+
+    // Nested inputs are flattened to their path below the input root, e.g.
+    // Study1/Series2/IM0001 becomes Study1_Series2_IM0001.dcm
+    private String outputName(File file, boolean isDicom) {
+        String name = file.getName();
+        if (inputRoot != null) {
+            Path relative = inputRoot.toPath().toAbsolutePath().normalize()
+                    .relativize(file.toPath().toAbsolutePath().normalize());
+            if (!relative.startsWith("..")) {
+                name = relative.toString().replace(File.separatorChar, '_');
+            }
+        }
+        if (isDicom && !isDicomFileName(name)) {
+            name += ".dcm"; // Outputs are written as DICOM based on the extension
+        }
+        return name;
+    }
+
+    public static boolean isDicomFileName(String fileName) {
+        String name = fileName.toLowerCase();
+        return name.endsWith(".dcm") || name.endsWith(".dicom");
+    }
+}
@@ -5,14 +5,11 @@ import java.awt.Font;
 import java.awt.FontMetrics;
 import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import javax.imageio.ImageIO;
 
 /**
  * A utility class that provides methods for image processing tasks, such as
@@ -24,21 +21,34 @@ import javax.imageio.ImageIO;
 public class ImageUtils {
 
     private static final Logger logger = Logger.getLogger(ImageUtils.class.getName());
+    private static final OutputWriter SYNCHRONOUS = new OutputWriter(0, 0, -1); // When the caller passes no writer
 
     // Utility to draw bounding boxes on the image
     public static BufferedImage outlineTextRegions(BufferedImage image, List<TextDetector.TextRegion> regions, String fileName) {
-        BufferedImage outlinedImage = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
-        Graphics2D g2d = outlinedImage.createGraphics();
-        g2d.drawImage(image, 0, 0, null);
+        return outlineTextRegions(image, regions, fileName, false);
+    }
 
+    // With inPlace, the boxes are drawn into the source image instead of a copy
+    public static BufferedImage outlineTextRegions(BufferedImage image, List<TextDetector.TextRegion> regions, String fileName, boolean inPlace) {
         // Check if the file is DICOM based on the extension
         String extension = fileName.substring(fileName.lastIndexOf('.') + 1).toLowerCase();
+        Color color;
         if (extension.equals("dcm") || extension.equals("dicom")) {
-            g2d.setColor(new Color(255, 255, 255, 255)); // White border for DICOM
+            color = new Color(255, 255, 255, 255); // White border for DICOM
         } else {
-            g2d.setColor(new Color(255, 0, 0, 128)); // Red semi-transparent for others
+            color = new Color(255, 0, 0, 128); // Red semi-transparent for others
         }
 
+        if (inPlace && regions != null && !regions.isEmpty()) {
+            outlineRegions(image, regions, color);
+            return image;
+        }
+
+        BufferedImage outlinedImage = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = outlinedImage.createGraphics();
+        g2d.drawImage(image, 0, 0, null);
+        g2d.setColor(color);
+
         if (regions == null || regions.isEmpty()) {
             System.out.println("No regions to outline.");
             g2d.dispose();
@@ -54,9 +64,17 @@ public class ImageUtils {
     }
 
     public static BufferedImage addWatermark(BufferedImage image, String watermarkText) {
-        BufferedImage watermarkedImage = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        return addWatermark(image, watermarkText, false);
+    }
+
+    // Text needs Java2D either way; inPlace draws it on the source image instead of a copy
+    public static BufferedImage addWatermark(BufferedImage image, String watermarkText, boolean inPlace) {
+        BufferedImage watermarkedImage = inPlace
+                ? image : new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
         Graphics2D g2d = watermarkedImage.createGraphics();
-        g2d.drawImage(image, 0, 0, null);
+        if (!inPlace) {
+            g2d.drawImage(image, 0, 0, null);
+        }
 
         // Configure watermark properties
         g2d.setFont(new Font("Arial", Font.BOLD, 48));
@@ -72,6 +90,12 @@ public class ImageUtils {
     }
 
     public static void saveImageWithMetadata(BufferedImage image, List<TextDetector.TextRegion> regions, String outputPath, String originalFileName) {
+        saveImageWithMetadata(image, regions, outputPath, originalFileName, null);
+    }
+
+    // A null writer writes synchronously with the default settings
+    public static void saveImageWithMetadata(BufferedImage image, List<TextDetector.TextRegion> regions, String outputPath, String originalFileName,
+            OutputWriter writer) {
         File folder = new File(outputPath);
         if (!folder.exists() && !folder.mkdirs()) {
             logger.log(Level.SEVERE, "Failed to create output folder: {0}", outputPath);
@@ -79,21 +103,19 @@ public class ImageUtils {
         }
 
         String baseName = originalFileName.replaceAll("\\.\\w+$", ""); // Strip extension
-        String fileName = baseName + "_" + System.currentTimeMillis() + ".png";
-        File outputFile = new File(folder, fileName);
+        String stamp = baseName + "_" + System.currentTimeMillis(); // Same name for the image and its metadata
+        File outputFile = new File(folder, stamp + ".png");
+        File metadataFile = new File(folder, stamp + ".txt");
+
+        StringBuilder metadata = new StringBuilder();
+        for (TextDetector.TextRegion region : regions) {
+            metadata.append(String.format("Text: '%s', Bounding Box: [x: %d, y: %d, width: %d, height: %d]%n",
+                    region.text.trim(), region.x, region.y, region.width, region.height));
+        }
 
         try {
-            // Save the image
-            ImageIO.write(image, "png", outputFile);
-
-            // Save metadata
-            File metadataFile = new File(folder, baseName + "_" + System.currentTimeMillis() + ".txt");
-            try (BufferedWriter writer = new BufferedWriter(new FileWriter(metadataFile))) {
-                for (TextDetector.TextRegion region : regions) {
-                    writer.write(String.format("Text: '%s', Bounding Box: [x: %d, y: %d, width: %d, height: %d]%n",
-                            region.text.trim(), region.x, region.y, region.width, region.height));
-                }
-            }
+            // Save the image and metadata together
+            (writer != null ? writer : SYNCHRONOUS).write(originalFileName, image, "png", outputFile, metadata.toString(), metadataFile);
 
             logger.log(Level.INFO, "Image and metadata saved to: {0}", outputFile.getAbsolutePath());
         } catch (IOException e) {
@@ -103,6 +125,11 @@ public class ImageUtils {
 
     // Utility to save an image to disk
     public static void saveImage(BufferedImage image, String outputPath, String originalFileName) {
+        saveImage(image, outputPath, originalFileName, null);
+    }
+
+    // A null writer writes synchronously with the default settings; DICOM is always written synchronously
+    public static void saveImage(BufferedImage image, String outputPath, String originalFileName, OutputWriter writer) {
         String extension = originalFileName.substring(originalFileName.lastIndexOf('.') + 1).toLowerCase();
         String baseName = originalFileName.substring(0, originalFileName.lastIndexOf('.'));
         File outputFile = new File(outputPath, baseName + "." + extension);
@@ -111,15 +138,46 @@ public class ImageUtils {
             if (extension.equals("dcm") || extension.equals("dicom")) {
                 DICOMImageReader.saveBufferedImageAsDICOM(image, outputFile);
             } else {
-                ImageIO.write(image, extension, outputFile);
+                (writer != null ? writer : SYNCHRONOUS).write(originalFileName, image, extension, outputFile, null, null);
             }
         } catch (IOException e) {
             logger.log(Level.SEVERE, "Failed to save image: {0}", e.getMessage());
         }
     }
 
+    // Redact DICOM pixels in their original encoding; false means nothing was written and the caller should re-encode instead
+    public static boolean saveRedactedDICOM(DICOMImageReader.DicomImage source, List<TextDetector.TextRegion> regions,
+            DicomRedactionWriter.Fill fill, String outputPath, String originalFileName) {
+        File outputFolder = new File(outputPath);
+        if (!outputFolder.exists() && !outputFolder.mkdirs()) {
+            logger.log(Level.SEVERE, "Failed to create output folder: {0}", outputPath);
+            return false;
+        }
+        File outputFile = new File(outputFolder, originalFileName);
+
+        try {
+            if (!DicomRedactionWriter.write(source, regions, fill, outputFile)) {
+                return false;
+            }
+            logger.log(Level.INFO, "Redacted DICOM saved to: {0}", outputFile.getAbsolutePath());
+            return true;
+        } catch (IOException e) {
+            // Written to a temporary name, so no partial file is left at the output path
+            logger.log(Level.SEVERE, "Failed to save redacted DICOM, re-encoding instead: {0}", e.getMessage());
+            return false;
+        }
+    }
+
     // Utility to mask text regions
     public static BufferedImage maskTextRegions(BufferedImage image, List<TextDetector.TextRegion> regions) {
+        return maskTextRegions(image, regions, false);
+    }
+
+    public static BufferedImage maskTextRegions(BufferedImage image, List<TextDetector.TextRegion> regions, boolean inPlace) {
+        if (inPlace) {
+            fillRegions(image, regions, Color.BLACK);
+            return image;
+        }
         BufferedImage maskedImage = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
         Graphics2D g2d = maskedImage.createGraphics();
         g2d.drawImage(image, 0, 0, null);
@@ -135,6 +193,14 @@ public class ImageUtils {
     }
 
     public static BufferedImage burnTextRegions(BufferedImage image, List<TextDetector.TextRegion> regions) {
+        return burnTextRegions(image, regions, false);
+    }
+
+    public static BufferedImage burnTextRegions(BufferedImage image, List<TextDetector.TextRegion> regions, boolean inPlace) {
+        if (inPlace) {
+            fillRegions(image, regions, new Color(255, 0, 0, 128));
+            return image;
+        }
         BufferedImage burnedImage = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
         Graphics2D g2d = burnedImage.createGraphics();
         g2d.drawImage(image, 0, 0, null);
@@ -150,6 +216,14 @@ public class ImageUtils {
     }
 
     public static BufferedImage burnDICOMTextRegions(BufferedImage image, List<TextDetector.TextRegion> regions) {
+        return burnDICOMTextRegions(image, regions, false);
+    }
+
+    public static BufferedImage burnDICOMTextRegions(BufferedImage image, List<TextDetector.TextRegion> regions, boolean inPlace) {
+        if (inPlace) {
+            fillRegions(image, regions, Color.WHITE);
+            return image;
+        }
         BufferedImage burnedImage = new BufferedImage(
                 image.getWidth(),
                 image.getHeight(),
@@ -167,4 +241,39 @@ public class ImageUtils {
         g2d.dispose();
         return burnedImage;
     }
+
+    // Paint straight into the raster when its type allows, else with Java2D on the source image
+    private static void fillRegions(BufferedImage image, List<TextDetector.TextRegion> regions, Color color) {
+        if (RasterPainter.supports(image)) {
+            for (TextDetector.TextRegion region : regions) {
+                RasterPainter.fill(image, region.x, region.y, region.width, region.height, color);
+            }
+            return;
+        }
+        Graphics2D g2d = image.createGraphics();
+        g2d.setColor(color);
+        for (TextDetector.TextRegion region : regions) {
+            g2d.fillRect(region.x, region.y, region.width, region.height);
+        }
+        g2d.dispose();
+    }
+
+    // Same pixels as Graphics2D.drawRect: a one-pixel border around (width + 1) x (height + 1)
+    private static void outlineRegions(BufferedImage image, List<TextDetector.TextRegion> regions, Color color) {
+        if (!RasterPainter.supports(image)) {
+            Graphics2D g2d = image.createGraphics();
+            g2d.setColor(color);
+            for (TextDetector.TextRegion region : regions) {
+                g2d.drawRect(region.x, region.y, region.width, region.height);
+            }
+            g2d.dispose();
+            return;
+        }
+        for (TextDetector.TextRegion r : regions) {
+            RasterPainter.fill(image, r.x, r.y, r.width + 1, 1, color);
+            RasterPainter.fill(image, r.x, r.y + r.height, r.width + 1, 1, color);
+            RasterPainter.fill(image, r.x, r.y + 1, 1, r.height - 1, color);
+            RasterPainter.fill(image, r.x + r.width, r.y + 1, 1, r.height - 1, color);
+        }
+    }
 }
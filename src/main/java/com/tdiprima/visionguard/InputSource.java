@@ -0,0 +1,232 @@
+package com.tdiprima.visionguard;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Sequence;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.io.DicomInputStream;
+
+/**
+ * A lazy source of input files. Walks the input directory (optionally
+ * recursively, for Study/Series/Instance exports) and hands out files as they
+ * are found, so processing starts before the walk finishes. If a DICOMDIR is
+ * present its index is used instead of walking the tree. DICOM files are
+ * recognized by the "DICM" magic after the 128-byte preamble, not by name.
+ *
+ * @author tdiprima
+ */
+public class InputSource implements Iterable<File>, AutoCloseable {
+
+    public static final String DICOMDIR = "DICOMDIR";
+
+    private static final Logger logger = Logger.getLogger(InputSource.class.getName());
+
+    private static final Set<String> IMAGE_EXTENSIONS = Set.of("jpg", "jpeg", "png", "bmp", "dicom", "dcm");
+    private static final int PREAMBLE_LENGTH = 128;
+
+    private final File root;
+    private final Stream<File> files;
+
+    private InputSource(File root, Stream<File> files) {
+        this.root = root;
+        this.files = files;
+    }
+
+    public static InputSource open(String path, DetectorConfig config) throws IOException {
+        File input = new File(path).getAbsoluteFile();
+
+        File dicomdir = input.isDirectory() ? new File(input, DICOMDIR) : input;
+        if (config.useDicomdir && dicomdir.getName().equals(DICOMDIR) && dicomdir.isFile()) {
+            System.out.println("Reading input files from index: " + dicomdir.getPath());
+            return new InputSource(dicomdir.getParentFile(), readDicomdir(dicomdir).stream());
+        }
+
+        if (!input.isDirectory()) {
+            throw new IOException("The specified path is not a directory: " + path);
+        }
+
+        // Entries are produced while the caller is consuming them
+        Walker walker = new Walker(input.toPath(), config.recursive ? Integer.MAX_VALUE : 1);
+        Stream<File> walk = StreamSupport.stream(Spliterators.spliteratorUnknownSize(walker, Spliterator.NONNULL), false)
+                .onClose(walker::close)
+                .filter(InputSource::isSupportedFile);
+        return new InputSource(input, walk);
+    }
+
+    // The directory outputs are named relative to
+    public File getRoot() {
+        return root;
+    }
+
+    // Drop files matching the predicate, still lazily
+    public InputSource skip(Predicate<File> exclude) {
+        return new InputSource(root, files.filter(exclude.negate()));
+    }
+
+    @Override
+    public Iterator<File> iterator() {
+        return files.iterator();
+    }
+
+    @Override
+    public void close() {
+        files.close();
+    }
+
+    private static boolean isSupportedFile(File file) {
+        String name = file.getName();
+        if (name.equals(DICOMDIR)) {
+            return false;
+        }
+        return hasImageExtension(name) || isDicom(file);
+    }
+
+    public static boolean hasImageExtension(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return dot >= 0 && IMAGE_EXTENSIONS.contains(fileName.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    // Part 10 files carry "DICM" right after the 128-byte preamble
+    public static boolean isDicom(File file) {
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            byte[] header = in.readNBytes(PREAMBLE_LENGTH + 4);
+            return header.length == PREAMBLE_LENGTH + 4
+                    && header[128] == 'D' && header[129] == 'I' && header[130] == 'C' && header[131] == 'M';
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // Lazy like Files.walk, but a directory that can't be read is logged and skipped instead of ending the batch
+    private static class Walker implements Iterator<File> {
+
+        private final Deque<Path> directories = new ArrayDeque<>();
+        private final Deque<Integer> depths = new ArrayDeque<>();
+        private final int maxDepth;
+        private DirectoryStream<Path> stream;
+        private Iterator<Path> entries;
+        private int depth;
+        private File next;
+
+        Walker(Path root, int maxDepth) {
+            this.maxDepth = maxDepth;
+            directories.push(root);
+            depths.push(0);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                next = advance();
+            }
+            return next != null;
+        }
+
+        @Override
+        public File next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            File file = next;
+            next = null;
+            return file;
+        }
+
+        // The next regular file, or null once every directory is done
+        private File advance() {
+            while (true) {
+                if (entries == null) {
+                    if (directories.isEmpty()) {
+                        return null;
+                    }
+                    open(directories.pop(), depths.pop());
+                    continue;
+                }
+                Path entry;
+                try {
+                    if (!entries.hasNext()) {
+                        close();
+                        continue;
+                    }
+                    entry = entries.next();
+                } catch (DirectoryIteratorException e) {
+                    logger.log(Level.WARNING, "Stopped reading a directory: {0}", e.getCause().getMessage());
+                    close();
+                    continue;
+                }
+                // Links to directories aren't followed, links to files are
+                if (Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS)) {
+                    if (depth + 1 < maxDepth) {
+                        directories.push(entry);
+                        depths.push(depth + 1);
+                    }
+                } else if (Files.isRegularFile(entry)) {
+                    return entry.toFile();
+                }
+            }
+        }
+
+        private void open(Path directory, int directoryDepth) {
+            try {
+                stream = Files.newDirectoryStream(directory);
+                entries = stream.iterator();
+                depth = directoryDepth;
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Skipping unreadable directory {0}: {1}", new Object[]{directory, e.getMessage()});
+            }
+        }
+
+        void close() {
+            if (stream != null) {
+                try {
+                    stream.close();
+                } catch (IOException e) {
+                    // Nothing left to read from it
+                }
+            }
+            stream = null;
+            entries = null;
+        }
+    }
+
+    // Image records only; paths in a DICOMDIR are relative to its own directory
+    private static List<File> readDicomdir(File dicomdir) throws IOException {
+        Attributes index;
+        try (DicomInputStream in = new DicomInputStream(dicomdir)) {
+            index = in.readDataset();
+        }
+
+        Sequence records = index.getSequence(Tag.DirectoryRecordSequence);
+        if (records == null) {
+            return List.of();
+        }
+        File base = dicomdir.getParentFile();
+        return records.stream()
+                .filter(record -> "IMAGE".equals(record.getString(Tag.DirectoryRecordType)))
+                .map(record -> record.getStrings(Tag.ReferencedFileID))
+                .filter(fileId -> fileId != null && fileId.length > 0)
+                .map(fileId -> new File(base, String.join(File.separator, fileId)))
+                .toList();
+    }
+}
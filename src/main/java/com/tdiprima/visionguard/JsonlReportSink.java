@@ -0,0 +1,123 @@
+package com.tdiprima.visionguard;
+
+import com.tdiprima.visionguard.TextDetector.DetectionResult;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.LongConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * All reports of a run in one JSON Lines file, one object per image. Records
+ * are serialized on the caller's thread and handed to a background writer
+ * through a bounded queue. The writer drains them in batches, with a single
+ * flush and sync per batch; a record's callback runs only once it is on disk.
+ * Callers block when the queue is full, so memory stays bounded if the disk
+ * falls behind.
+ *
+ * @author tdiprima
+ */
+public class JsonlReportSink implements ReportSink {
+
+    public static final String FILE_NAME = "visionguard_report.jsonl";
+
+    private static final Logger logger = Logger.getLogger(JsonlReportSink.class.getName());
+    private static final int MAX_BATCH = 256;
+
+    // bytes is the UTF-8 length of the line and its newline
+    private record Entry(String line, long bytes, LongConsumer onWritten) {
+    }
+
+    private static final Entry END = new Entry(null, 0, null);
+
+    private final File reportFile;
+    private final FileChannel channel;
+    private final BufferedWriter writer;
+    private final BlockingQueue<Entry> queue;
+    private final Thread writerThread;
+
+    // With append, records of an earlier run are kept (used when resuming)
+    public JsonlReportSink(File reportFile, boolean append, int capacity) throws IOException {
+        this.reportFile = reportFile;
+        this.channel = FileChannel.open(reportFile.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING);
+        this.writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8));
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.writerThread = new Thread(this::drain, "report-writer");
+        writerThread.start();
+    }
+
+    @Override
+    public void write(File file, String name, DetectionResult tesseractResult, DetectionResult ollamaResult, LongConsumer onWritten) {
+        String line = DetectorValidator.toJsonLine(file, name, tesseractResult, ollamaResult);
+        try {
+            queue.put(new Entry(line, line.getBytes(StandardCharsets.UTF_8).length + 1L, onWritten));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while queueing the report for " + name, e);
+        }
+    }
+
+    @Override
+    public String location(String name) {
+        return reportFile.getAbsolutePath();
+    }
+
+    private void drain() {
+        List<Entry> batch = new ArrayList<>(MAX_BATCH);
+        boolean ended = false;
+        while (!ended) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            queue.drainTo(batch, MAX_BATCH - 1);
+            // Decided up front so a failed batch can't leave close() waiting
+            ended = batch.remove(END);
+
+            try {
+                for (Entry entry : batch) {
+                    writer.write(entry.line());
+                    writer.write('\n');
+                }
+                writer.flush();
+                channel.force(false);
+            } catch (IOException e) {
+                // Without the callback the file isn't journaled as done, so a resumed run redoes it
+                logger.log(Level.SEVERE, "Failed to write {0} report records: {1}", new Object[]{batch.size(), e.getMessage()});
+                batch.clear();
+                continue;
+            }
+            for (Entry entry : batch) {
+                try {
+                    entry.onWritten().accept(entry.bytes());
+                } catch (RuntimeException e) {
+                    // A failing callback must not stop the writer, or producers would block on the full queue
+                    logger.log(Level.SEVERE, "Report callback failed: {0}", e.getMessage());
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            queue.put(END);
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writer.close();
+    }
+}
@@ -0,0 +1,53 @@
+package com.tdiprima.visionguard;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import javax.imageio.stream.ImageInputStreamImpl;
+
+/**
+ * An ImageInputStream over a ByteBuffer, typically a memory-mapped file.
+ * Reads and seeks are plain buffer accesses, with no system calls or extra
+ * copies, so the DICOM reader can jump between header and frames for free.
+ *
+ * @author tdiprima
+ */
+public class MappedImageInputStream extends ImageInputStreamImpl {
+
+    private final ByteBuffer buffer;
+
+    public MappedImageInputStream(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    @Override
+    public int read() throws IOException {
+        checkClosed();
+        bitOffset = 0;
+        if (streamPos >= buffer.limit()) {
+            return -1;
+        }
+        return buffer.get((int) streamPos++) & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        checkClosed();
+        bitOffset = 0;
+        if (len == 0) {
+            return 0;
+        }
+        int available = buffer.limit() - (int) Math.min(streamPos, buffer.limit());
+        if (available <= 0) {
+            return -1;
+        }
+        int n = Math.min(len, available);
+        buffer.get((int) streamPos, b, off, n);
+        streamPos += n;
+        return n;
+    }
+
+    @Override
+    public long length() {
+        return buffer.limit();
+    }
+}
@@ -0,0 +1,173 @@
+package com.tdiprima.visionguard;
+
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Run metrics: per-stage latency histograms and counters for files, regions
+ * and bytes. Recording an event is a {@link System#nanoTime()} difference
+ * and a couple of {@link LongAdder} increments, with no allocation or string
+ * formatting; text is only produced when a snapshot is exported.
+ *
+ * @author tdiprima
+ */
+public class Metrics {
+
+    public enum Stage {
+        DECODE,
+        DETECT,  // OCR, including ROI passes and cache lookups
+        OLLAMA,  // From submission to answer
+        ACT,     // Rendering and saving outputs
+        WRITE    // Report and journal
+    }
+
+    public enum Counter {
+        FILES_DONE,
+        FILES_SKIPPED,
+        FILES_FAILED,
+        REGIONS,
+        BYTES_READ,
+        BYTES_WRITTEN
+    }
+
+    // Upper bucket bounds in seconds; the last bucket is +Inf
+    private static final double[] BOUNDS_SECONDS = {0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60};
+    private static final long[] BOUNDS_NANOS = new long[BOUNDS_SECONDS.length];
+
+    static {
+        for (int i = 0; i < BOUNDS_SECONDS.length; i++) {
+            BOUNDS_NANOS[i] = (long) (BOUNDS_SECONDS[i] * 1e9);
+        }
+    }
+
+    private final long startNanos = System.nanoTime();
+    private final LongAdder[][] buckets = new LongAdder[Stage.values().length][BOUNDS_NANOS.length + 1];
+    private final LongAdder[] sumNanos = new LongAdder[Stage.values().length];
+    private final LongAdder[] counters = new LongAdder[Counter.values().length];
+
+    public Metrics() {
+        for (int s = 0; s < buckets.length; s++) {
+            for (int b = 0; b < buckets[s].length; b++) {
+                buckets[s][b] = new LongAdder();
+            }
+            sumNanos[s] = new LongAdder();
+        }
+        for (int c = 0; c < counters.length; c++) {
+            counters[c] = new LongAdder();
+        }
+    }
+
+    // Record a stage that started at startNanos (from System.nanoTime())
+    public void record(Stage stage, long startNanos) {
+        long elapsed = System.nanoTime() - startNanos;
+        int bucket = 0;
+        while (bucket < BOUNDS_NANOS.length && elapsed > BOUNDS_NANOS[bucket]) {
+            bucket++;
+        }
+        buckets[stage.ordinal()][bucket].increment();
+        sumNanos[stage.ordinal()].add(elapsed);
+    }
+
+    public void increment(Counter counter) {
+        counters[counter.ordinal()].increment();
+    }
+
+    public void add(Counter counter, long amount) {
+        counters[counter.ordinal()].add(amount);
+    }
+
+    public long get(Counter counter) {
+        return counters[counter.ordinal()].sum();
+    }
+
+    private double uptimeSeconds() {
+        return (System.nanoTime() - startNanos) / 1e9;
+    }
+
+    // Prometheus text exposition format
+    public String toPrometheus() {
+        StringBuilder sb = new StringBuilder(4096);
+        sb.append("# HELP visionguard_stage_seconds Time spent per file in each processing stage.\n");
+        sb.append("# TYPE visionguard_stage_seconds histogram\n");
+        for (Stage stage : Stage.values()) {
+            String label = stage.name().toLowerCase(Locale.ROOT);
+            long cumulative = 0;
+            for (int b = 0; b <= BOUNDS_SECONDS.length; b++) {
+                cumulative += buckets[stage.ordinal()][b].sum();
+                String le = b < BOUNDS_SECONDS.length ? String.valueOf(BOUNDS_SECONDS[b]) : "+Inf";
+                sb.append("visionguard_stage_seconds_bucket{stage=\"").append(label).append("\",le=\"").append(le).append("\"} ")
+                        .append(cumulative).append('\n');
+            }
+            sb.append("visionguard_stage_seconds_sum{stage=\"").append(label).append("\"} ")
+                    .append(sumNanos[stage.ordinal()].sum() / 1e9).append('\n');
+            sb.append("visionguard_stage_seconds_count{stage=\"").append(label).append("\"} ").append(cumulative).append('\n');
+        }
+
+        sb.append("# TYPE visionguard_files_total counter\n");
+        sb.append("visionguard_files_total{status=\"done\"} ").append(get(Counter.FILES_DONE)).append('\n');
+        sb.append("visionguard_files_total{status=\"skipped\"} ").append(get(Counter.FILES_SKIPPED)).append('\n');
+        sb.append("visionguard_files_total{status=\"failed\"} ").append(get(Counter.FILES_FAILED)).append('\n');
+        sb.append("# TYPE visionguard_regions_total counter\n");
+        sb.append("visionguard_regions_total ").append(get(Counter.REGIONS)).append('\n');
+        sb.append("# TYPE visionguard_bytes_read_total counter\n");
+        sb.append("visionguard_bytes_read_total ").append(get(Counter.BYTES_READ)).append('\n');
+        sb.append("# TYPE visionguard_bytes_written_total counter\n");
+        sb.append("visionguard_bytes_written_total ").append(get(Counter.BYTES_WRITTEN)).append('\n');
+        sb.append("# TYPE visionguard_files_per_second gauge\n");
+        sb.append("visionguard_files_per_second ").append(filesPerSecond()).append('\n');
+        sb.append("# TYPE visionguard_uptime_seconds gauge\n");
+        sb.append("visionguard_uptime_seconds ").append(uptimeSeconds()).append('\n');
+        return sb.toString();
+    }
+
+    public String toJson() {
+        StringWriter out = new StringWriter(4096);
+        try (JsonWriter json = new JsonWriter(out)) {
+            json.setIndent("  ");
+            json.beginObject();
+            json.name("uptimeSeconds").value(uptimeSeconds());
+            json.name("filesPerSecond").value(filesPerSecond());
+
+            json.name("counters").beginObject();
+            for (Counter counter : Counter.values()) {
+                json.name(counter.name().toLowerCase(Locale.ROOT)).value(get(counter));
+            }
+            json.endObject();
+
+            json.name("stages").beginObject();
+            for (Stage stage : Stage.values()) {
+                long count = 0;
+                json.name(stage.name().toLowerCase(Locale.ROOT)).beginObject();
+                json.name("buckets").beginArray();
+                for (int b = 0; b <= BOUNDS_SECONDS.length; b++) {
+                    long inBucket = buckets[stage.ordinal()][b].sum();
+                    count += inBucket;
+                    json.beginObject();
+                    if (b < BOUNDS_SECONDS.length) {
+                        json.name("le").value(BOUNDS_SECONDS[b]);
+                    } else {
+                        json.name("le").value("+Inf");
+                    }
+                    json.name("count").value(inBucket).endObject();
+                }
+                json.endArray();
+                json.name("count").value(count);
+                json.name("sumSeconds").value(sumNanos[stage.ordinal()].sum() / 1e9);
+                json.endObject();
+            }
+            json.endObject();
+            json.endObject();
+        } catch (IOException e) {
+            throw new IllegalStateException("Writing to a StringWriter failed", e);
+        }
+        return out.toString();
+    }
+
+    private double filesPerSecond() {
+        double uptime = uptimeSeconds();
+        return uptime > 0 ? get(Counter.FILES_DONE) / uptime : 0;
+    }
+}
@@ -0,0 +1,102 @@
+package com.tdiprima.visionguard;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Publishes {@link Metrics} snapshots. metrics.prom and metrics.json in the
+ * report directory are rewritten atomically at a fixed interval and once
+ * more at shutdown. Optionally, a local HTTP endpoint serves /metrics
+ * (Prometheus) and /metrics.json for scraping.
+ *
+ * @author tdiprima
+ */
+public class MetricsExporter implements AutoCloseable {
+
+    public static final String PROMETHEUS_FILE = "metrics.prom";
+    public static final String JSON_FILE = "metrics.json";
+
+    private static final Logger logger = Logger.getLogger(MetricsExporter.class.getName());
+
+    private final Metrics metrics;
+    private final File reportDir;
+    private final ScheduledExecutorService flusher;
+    private final HttpServer server;
+
+    // A port of 0 disables the HTTP endpoint
+    public MetricsExporter(Metrics metrics, File reportDir, int intervalSeconds, int port) throws IOException {
+        this.metrics = metrics;
+        this.reportDir = reportDir;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+
+        if (port > 0) {
+            // Loopback only; put a proxy in front to expose it further
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+            server.createContext("/metrics", exchange -> respond(exchange, "text/plain; version=0.0.4", metrics::toPrometheus));
+            server.createContext("/metrics.json", exchange -> respond(exchange, "application/json", metrics::toJson));
+            server.start();
+            System.out.println("Serving metrics on http://localhost:" + port + "/metrics");
+        } else {
+            server = null;
+        }
+    }
+
+    private static void respond(HttpExchange exchange, String contentType, Supplier<String> body) throws IOException {
+        byte[] bytes = body.get().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    public void flush() throws IOException {
+        writeAtomically(PROMETHEUS_FILE, metrics.toPrometheus());
+        writeAtomically(JSON_FILE, metrics.toJson());
+    }
+
+    // Readers never see a half-written file
+    private void writeAtomically(String name, String content) throws IOException {
+        Path target = new File(reportDir, name).toPath();
+        Path temp = new File(reportDir, name + ".tmp").toPath();
+        Files.writeString(temp, content, StandardCharsets.UTF_8);
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to write metrics: {0}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flusher.shutdownNow();
+        if (server != null) {
+            server.stop(0);
+        }
+        flush();
+    }
+}
@@ -0,0 +1,119 @@
+package com.tdiprima.visionguard;
+
+import com.tdiprima.visionguard.DICOMImageReader.DicomImage;
+import com.tdiprima.visionguard.TextDetector.DetectionResult;
+import com.tdiprima.visionguard.TextDetector.TextRegion;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Runs detection over every frame of a multi-frame DICOM object (ultrasound
+ * cine loops, enhanced multi-frame). Frames are decoded lazily one at a time,
+ * OCR runs across frames in parallel, and frames with byte-identical pixels
+ * are only OCR'd once. The result holds the union of all frames' regions.
+ *
+ * @author tdiprima
+ */
+public class MultiFrameDetector implements AutoCloseable {
+
+    private final DetectorPool framePool;
+    private final ExecutorService executor;
+
+    // With a null pool, frames are OCR'd one after another on the caller's detector
+    public MultiFrameDetector(DetectorPool framePool) {
+        this.framePool = framePool;
+        this.executor = framePool != null ? Executors.newFixedThreadPool(framePool.size()) : null;
+    }
+
+    // With a null profile every frame is OCR'd in full
+    public DetectionResult detect(DicomImage dicom, BufferedImage firstFrame, TextDetector callerDetector,
+            RoiProfiles.Profile roi) throws IOException {
+        int workers = framePool != null ? framePool.size() : 1;
+        Semaphore decodedAhead = new Semaphore(workers); // At most one decoded frame per worker
+        Set<String> seenFrames = new HashSet<>();
+        List<CompletableFuture<DetectionResult>> results = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < dicom.getNumFrames(); i++) {
+                decodedAhead.acquire();
+                BufferedImage frame = i == 0 ? firstFrame : dicom.readFrame(i);
+
+                if (!seenFrames.add(DetectionCache.pixelHash(frame))) {
+                    decodedAhead.release(); // Same pixels as an earlier frame
+                    continue;
+                }
+
+                if (framePool == null) {
+                    results.add(CompletableFuture.completedFuture(detectFrame(callerDetector, frame, roi)));
+                    decodedAhead.release();
+                } else {
+                    results.add(CompletableFuture.supplyAsync(() -> detectPooled(frame, roi), executor)
+                            .whenComplete((result, error) -> decodedAhead.release()));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading frames", e);
+        }
+
+        System.out.println("OCR'd " + results.size() + " distinct of " + dicom.getNumFrames() + " frames.");
+        DetectionResult merged = new DetectionResult(firstFrame, mergeRegions(results));
+        merged.failed = results.stream().anyMatch(result -> result.join().failed); // One unread frame may hold the text
+        return merged;
+    }
+
+    private DetectionResult detectPooled(BufferedImage frame, RoiProfiles.Profile roi) {
+        TextDetector detector;
+        try {
+            detector = framePool.borrow();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a frame detector", e);
+        }
+        try {
+            return detectFrame(detector, frame, roi);
+        } finally {
+            framePool.release(detector);
+        }
+    }
+
+    private static DetectionResult detectFrame(TextDetector detector, BufferedImage frame, RoiProfiles.Profile roi) {
+        return roi != null ? roi.detect(detector, frame) : detector.detect(frame);
+    }
+
+    // Static overlays repeat on every frame, so identical boxes are kept once
+    private static List<TextRegion> mergeRegions(List<CompletableFuture<DetectionResult>> results) {
+        Map<String, TextRegion> merged = new LinkedHashMap<>();
+        for (CompletableFuture<DetectionResult> result : results) {
+            List<TextRegion> regions = result.join().regions;
+            if (regions == null) {
+                continue;
+            }
+            for (TextRegion region : regions) {
+                String key = region.x + "," + region.y + "," + region.width + "," + region.height + "," + region.text;
+                merged.putIfAbsent(key, region);
+            }
+        }
+        return new ArrayList<>(merged.values());
+    }
+
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+        if (framePool != null) {
+            framePool.close();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.tdiprima.visionguard;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+
+/**
+ * Prepares an image for Tesseract: converts it to 8-bit grayscale, optionally
+ * rescales it, and binarizes it with a local-mean adaptive threshold (Bradley
+ * and Roth) over an integral image. Mostly dark images, such as DICOM frames
+ * with white overlay text, are inverted first, so Tesseract always gets a
+ * smaller, clean black-on-white input. Boxes are mapped back with
+ * {@link #toOriginal}.
+ *
+ * @author tdiprima
+ */
+public class OcrPreprocessor {
+
+    // A pixel is ink if it is this much darker than its neighbourhood mean
+    private static final int THRESHOLD_PERCENT = 15;
+
+    private final double scale;
+    private final int window;
+    private final boolean binarize;
+
+    public OcrPreprocessor(double scale, int window, boolean binarize) {
+        this.scale = scale;
+        this.window = window;
+        this.binarize = binarize;
+    }
+
+    public static OcrPreprocessor fromConfig(DetectorConfig config) {
+        return config.ocrPreprocess ? new OcrPreprocessor(config.ocrScale, config.ocrThresholdWindow, config.ocrBinarize) : null;
+    }
+
+    public String fingerprint() {
+        return "pre:" + scale + "," + window + "," + binarize;
+    }
+
+    // Always returns a new image; the input is not modified
+    public BufferedImage apply(BufferedImage image) {
+        int width = scaled(image.getWidth());
+        int height = scaled(image.getHeight());
+
+        // One draw converts the color model and rescales
+        BufferedImage gray = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g = gray.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                scale < 1.0 ? RenderingHints.VALUE_INTERPOLATION_BILINEAR : RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+        g.drawImage(image, 0, 0, width, height, null);
+        g.dispose();
+
+        if (binarize) {
+            threshold(((DataBufferByte) gray.getRaster().getDataBuffer()).getData(), width, height);
+        }
+        return gray;
+    }
+
+    private int scaled(int length) {
+        return Math.max(1, (int) Math.round(length * scale));
+    }
+
+    // Map a box in the preprocessed image back to an original of the given size. Edges are
+    // rounded outwards, using each axis' actual scale, so the box still covers all of the text.
+    public Rectangle toOriginal(Rectangle box, int originalWidth, int originalHeight) {
+        double scaleX = (double) scaled(originalWidth) / originalWidth;
+        double scaleY = (double) scaled(originalHeight) / originalHeight;
+        int x0 = Math.max(0, (int) Math.floor(box.x / scaleX));
+        int y0 = Math.max(0, (int) Math.floor(box.y / scaleY));
+        int x1 = Math.min(originalWidth, (int) Math.ceil((box.x + box.width) / scaleX));
+        int y1 = Math.min(originalHeight, (int) Math.ceil((box.y + box.height) / scaleY));
+        return new Rectangle(x0, y0, Math.max(0, x1 - x0), Math.max(0, y1 - y0));
+    }
+
+    private void threshold(byte[] pixels, int width, int height) {
+        long total = 0;
+        for (byte pixel : pixels) {
+            total += pixel & 0xff;
+        }
+        if (total < 128L * pixels.length) {
+            for (int i = 0; i < pixels.length; i++) {
+                pixels[i] = (byte) ~pixels[i];
+            }
+        }
+
+        // Integral image with a zero first row and column
+        int stride = width + 1;
+        long[] integral = new long[stride * (height + 1)];
+        for (int y = 0; y < height; y++) {
+            long rowSum = 0;
+            int row = y * width;
+            int above = y * stride;
+            int here = above + stride;
+            for (int x = 0; x < width; x++) {
+                rowSum += pixels[row + x] & 0xff;
+                integral[here + x + 1] = integral[above + x + 1] + rowSum;
+            }
+        }
+
+        int half = window / 2;
+        for (int y = 0; y < height; y++) {
+            int y0 = Math.max(0, y - half);
+            int y1 = Math.min(height, y + half + 1);
+            int top = y0 * stride;
+            int bottom = y1 * stride;
+            int row = y * width;
+            for (int x = 0; x < width; x++) {
+                int x0 = Math.max(0, x - half);
+                int x1 = Math.min(width, x + half + 1);
+                long sum = integral[bottom + x1] - integral[bottom + x0] - integral[top + x1] + integral[top + x0];
+                long count = (long) (x1 - x0) * (y1 - y0);
+                // pixel < mean * (100 - T) / 100, without division
+                boolean ink = (pixels[row + x] & 0xff) * count * 100 < sum * (100 - THRESHOLD_PERCENT);
+                pixels[row + x] = ink ? 0 : (byte) 0xff;
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.tdiprima.visionguard;
+
+import com.tdiprima.visionguard.TextDetector.DetectionResult;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Runs Ollama requests in their own lane, so Tesseract work on later files can
+ * continue while vision-model answers are pending. Keeps count of requests and
+ * their follow-up work so a batch can wait for everything to finish.
+ * Submissions are handed to the detector by the lane's own thread, which is
+ * the one that waits while the request limit is reached. The lane holds at
+ * most twice that limit, counting requests in flight and those waiting; past
+ * that the caller waits, so queued images can't fill the heap.
+ *
+ * @author tdiprima
+ */
+public class OllamaLane {
+
+    private final OllamaTextDetector detector;
+    private final Semaphore capacity;
+    private final ExecutorService submitter = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ollama-lane");
+        thread.setDaemon(true); // Idle once the batch is done, so it doesn't keep the JVM up
+        return thread;
+    });
+    private int pending = 0;
+
+    // maxInFlight as given to the detector
+    public OllamaLane(OllamaTextDetector detector, int maxInFlight) {
+        this.detector = detector;
+        this.capacity = new Semaphore(2 * maxInFlight);
+    }
+
+    public OllamaTextDetector getDetector() {
+        return detector;
+    }
+
+    // Blocks only while the lane is full
+    public CompletableFuture<DetectionResult> submit(BufferedImage image) {
+        try {
+            capacity.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<DetectionResult> request;
+        try {
+            request = CompletableFuture.supplyAsync(() -> detector.detectAsync(image), submitter)
+                    .thenCompose(pending -> pending);
+        } catch (RuntimeException e) {
+            capacity.release();
+            throw e;
+        }
+        // Released after completion, so follow-ups registered by then have run and the slot is really free
+        CompletableFuture<DetectionResult> done = new CompletableFuture<>();
+        request.whenComplete((result, error) -> {
+            try {
+                if (error != null) {
+                    done.completeExceptionally(error);
+                } else {
+                    done.complete(result);
+                }
+            } finally {
+                capacity.release();
+            }
+        });
+        return done;
+    }
+
+    // Run the follow-up once the request completes; counted until it has finished
+    public void whenDone(CompletableFuture<DetectionResult> request, Runnable followUp) {
+        synchronized (this) {
+            pending++;
+        }
+        request.whenComplete((result, error) -> {
+            try {
+                followUp.run();
+            } finally {
+                synchronized (this) {
+                    pending--;
+                    notifyAll();
+                }
+            }
+        });
+    }
+
+    // Block until every follow-up registered so far has run
+    public synchronized void awaitIdle() throws InterruptedException {
+        while (pending > 0) {
+            wait();
+        }
+    }
+}
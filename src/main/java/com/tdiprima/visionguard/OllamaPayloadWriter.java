@@ -0,0 +1,77 @@
+package com.tdiprima.visionguard;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import java.awt.image.BufferedImage;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import javax.imageio.ImageIO;
+
+/**
+ * Streams Ollama request bodies and responses. The image is encoded PNG to
+ * Base64 to JSON straight into the request body, so the payload never exists
+ * as a string or byte array, and the response is read field by field instead
+ * of being buffered first.
+ *
+ * @author tdiprima
+ */
+public class OllamaPayloadWriter {
+
+    private static final Gson gson = new Gson();
+
+    // Writes {"model": ..., "prompt": ..., "stream": false, "images": ["<base64 png>"]}
+    public static void write(OutputStream out, String model, String prompt, BufferedImage image) throws IOException {
+        out.write(("{\"model\":" + gson.toJson(model)
+                + ",\"prompt\":" + gson.toJson(prompt)
+                + ",\"stream\":false,\"images\":[\"").getBytes(StandardCharsets.UTF_8));
+
+        // Base64 output never needs JSON escaping; closing the encoder writes the padding only
+        try (OutputStream base64 = Base64.getEncoder().wrap(new NonClosingOutputStream(out))) {
+            if (!ImageIO.write(image, "png", base64)) {
+                throw new IOException("No PNG writer available.");
+            }
+        }
+
+        out.write("\"]}".getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    // Reads only the "response" field, skipping everything else
+    public static String readResponse(InputStream in) throws IOException {
+        String response = "";
+        try (JsonReader reader = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals("response")) {
+                    response = reader.nextString();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        return response;
+    }
+
+    private static class NonClosingOutputStream extends FilterOutputStream {
+
+        NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
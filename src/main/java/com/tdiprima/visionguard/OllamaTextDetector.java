@@ -2,25 +2,42 @@ package com.tdiprima.visionguard;
 
 import java.awt.image.BufferedImage;
 import java.io.*;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.util.Base64;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import javax.imageio.ImageIO;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
 
 /**
  * A text detection implementation that uses an external API to extract text
- * from images, with support for configurable server endpoints.
+ * from images, with support for configurable server endpoints. Requests go
+ * through a shared keep-alive HTTP client with configurable timeouts and a
+ * cap on the number of requests in flight. Payloads and responses are
+ * streamed, see {@link OllamaPayloadWriter}.
  *
  * @author tdiprima
  */
 public class OllamaTextDetector implements TextDetector {
 
+    private static final String MODEL = "llama3.2-vision";
+    private static final String PROMPT = "Extract all text from the attached image";
+    private static final int PAYLOAD_BUFFER_SIZE = 64 * 1024;
+
     private String ollamaServerUrl;
     private static final Logger logger = Logger.getLogger(OllamaTextDetector.class.getName());
+    private HttpClient httpClient;
+    private Duration requestTimeout;
+    private Semaphore inFlight;
+
+    public OllamaTextDetector() {
+        // The HTTP client is built by initialize(), or with the defaults on first use
+    }
 
     @Override
     public void setupParameters(String... params) {
@@ -31,8 +48,14 @@ public class OllamaTextDetector implements TextDetector {
     }
 
     @Override
-    public void initialize(DetectorConfig config) {
-        // No configuration required beyond server URL setup
+    public synchronized void initialize(DetectorConfig config) {
+        // The client pools and reuses connections across requests
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(config.ollamaConnectTimeoutMs))
+                .build();
+        this.requestTimeout = Duration.ofMillis(config.ollamaTimeoutMs);
+        this.inFlight = new Semaphore(config.ollamaMaxInFlight);
     }
 
     @Override
@@ -40,37 +63,47 @@ public class OllamaTextDetector implements TextDetector {
         // Ollama doesn't return bounding boxes (vision model is not good at it)
     }
 
+    @Override
+    public String settingsFingerprint() {
+        return String.join("|", getClass().getName(), ollamaServerUrl, MODEL, PROMPT);
+    }
+
     @Override
     public DetectionResult detect(BufferedImage image) {
+        return detectAsync(image).join();
+    }
+
+    // Blocks only while the maximum number of requests is already in flight
+    public CompletableFuture<DetectionResult> detectAsync(BufferedImage image) {
+        initializeIfNeeded();
         try {
-            // Encode the image to Base64 (convert to PNG for Ollama compatibility)
-            String base64Image = encodeImageToBase64(image);
-            if (base64Image == null) {
-                throw new IllegalArgumentException("Failed to encode image to Base64.");
+            inFlight.acquire();
+            CompletableFuture<String> responseFuture;
+            try {
+                responseFuture = sendPostRequest(ollamaServerUrl, image);
+            } catch (RuntimeException e) {
+                inFlight.release();
+                throw e;
             }
-
-            // Create the JSON payload
-            String jsonPayload = String.format(
-                    """
-                    {
-                        "model": "llama3.2-vision",
-                        "prompt": "Extract all text from the attached image",
-                        "stream": false,
-                        "images": ["%s"]
-                    }
-                    """, base64Image);
-
-            // Send the POST request
-            String responseJson = sendPostRequest(ollamaServerUrl, jsonPayload);
-
-            // Parse and extract the response
-            JsonObject responseObject = JsonParser.parseString(responseJson).getAsJsonObject();
-            String response = responseObject.has("response") ? responseObject.get("response").getAsString() : "";
-
-            return new DetectionResult(image, response);
+            return responseFuture
+                    .whenComplete((response, error) -> inFlight.release())
+                    .thenApply(response -> new DetectionResult(image, response))
+                    .exceptionally(e -> {
+                        logger.log(Level.SEVERE, "Detection error: {0}", e.getMessage());
+                        return new DetectionResult(image, "");
+                    });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.completedFuture(new DetectionResult(image, ""));
         } catch (Exception e) {
             logger.log(Level.SEVERE, "Detection error: {0}", e.getMessage());
-            return new DetectionResult(image, "");
+            return CompletableFuture.completedFuture(new DetectionResult(image, ""));
+        }
+    }
+
+    private synchronized void initializeIfNeeded() {
+        if (httpClient == null) {
+            initialize(new DetectorConfig());
         }
     }
 
@@ -83,51 +116,64 @@ public class OllamaTextDetector implements TextDetector {
         }
     }
 
-    private String encodeImageToBase64(BufferedImage image) {
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-            ImageIO.write(image, "png", baos);
-            return Base64.getEncoder().encodeToString(baos.toByteArray());
+    private CompletableFuture<String> sendPostRequest(String urlString, BufferedImage image) {
+        System.out.println("*** QUERYING LLAMA VISION MODEL ***");
+        AtomicReference<InputStream> payload = new AtomicReference<>();
+        HttpRequest request = HttpRequest.newBuilder(URI.create(urlString))
+                .timeout(requestTimeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofInputStream(() -> streamPayload(image, payload)))
+                .build();
+
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream())
+                .thenApply(response -> {
+                    try (InputStream body = response.body()) {
+                        if (response.statusCode() != 200) {
+                            throw new IOException("Ollama returned HTTP " + response.statusCode());
+                        }
+                        return OllamaPayloadWriter.readResponse(body);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                })
+                .whenComplete((response, error) -> closeQuietly(payload.get()));
+    }
+
+    // Encode the image on a separate thread straight into the request body
+    private InputStream streamPayload(BufferedImage image, AtomicReference<InputStream> payload) {
+        try {
+            PipedInputStream in = new PipedInputStream(PAYLOAD_BUFFER_SIZE);
+            PipedOutputStream out = new PipedOutputStream(in);
+            payload.set(in);
+            Thread.ofVirtual().name("ollama-payload").start(() -> {
+                try (out) {
+                    OllamaPayloadWriter.write(out, MODEL, PROMPT, image);
+                } catch (IOException e) {
+                    // The request was abandoned and the pipe closed under us
+                    logger.log(Level.FINE, "Payload stream closed: {0}", e.getMessage());
+                }
+            });
+            return in;
         } catch (IOException e) {
-            logger.log(Level.SEVERE, "Failed to encode image: {0}", e.getMessage());
-            return null;
+            throw new UncheckedIOException(e);
         }
     }
 
-    private String sendPostRequest(String urlString, String jsonPayload) throws IOException {
-        System.out.println("*** QUERYING LLAMA VISION MODEL ***");
-        HttpURLConnection connection = null;
-        StringBuilder response = new StringBuilder();
+    private static void closeQuietly(InputStream in) {
+        if (in == null) {
+            return;
+        }
         try {
-            connection = (HttpURLConnection) new URL(urlString).openConnection();
-            connection.setRequestMethod("POST");
-            connection.setDoOutput(true);
-            connection.setRequestProperty("Content-Type", "application/json");
-
-            // Send the JSON payload
-            try (OutputStream os = connection.getOutputStream()) {
-                os.write(jsonPayload.getBytes());
-                os.flush();
-            }
-
-            // Read the response
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream()))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    response.append(line);
-                }
-            }
-        } finally {
-            if (connection != null) {
-                connection.disconnect();
-            }
+            in.close();
+        } catch (IOException e) {
+            // Nothing left to clean up
         }
-        return response.toString();
     }
 
     private void saveResponseToFile(String response, String outputPath, String originalFileName) {
         File outputFile = new File(outputPath, originalFileName + "_response.txt");
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(outputFile))) {
-            writer.write("Ollama Response:\n" + response);
+        try {
+            OutputWriter.writeAtomically(outputFile, out -> out.write(("Ollama Response:\n" + response).getBytes(StandardCharsets.UTF_8)));
             logger.info("Response saved to: " + outputFile.getAbsolutePath());
         } catch (IOException e) {
             logger.log(Level.SEVERE, "Failed to save response: {0}", e.getMessage());
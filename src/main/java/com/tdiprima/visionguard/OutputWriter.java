@@ -0,0 +1,220 @@
+package com.tdiprima.visionguard;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * Encodes output images off the processing threads. Writes go to a fixed
+ * pool, with at most a bounded number queued or running; beyond that the
+ * caller waits. Every file is written to a temporary name and renamed into
+ * place, so a partial output never appears. Fully opaque ARGB images are
+ * written without the alpha channel, and the PNG deflate level can be set.
+ * Pending writes are tracked by source name so the caller can hold the
+ * report and journal entry until that file's outputs are on disk.
+ *
+ * @author tdiprima
+ */
+public class OutputWriter implements AutoCloseable {
+
+    private final int pngLevel; // 0-9, or -1 for the encoder's default
+    private final ExecutorService executor;
+    private final Semaphore inFlight;
+    private final Map<String, CompletableFuture<Void>> pending = new ConcurrentHashMap<>();
+
+    // With 0 threads every write happens on the caller's thread
+    public OutputWriter(int threads, int maxInFlight, int pngLevel) {
+        this.pngLevel = pngLevel;
+        if (threads > 0) {
+            AtomicInteger count = new AtomicInteger();
+            this.executor = Executors.newFixedThreadPool(threads,
+                    runnable -> new Thread(runnable, "output-writer-" + count.incrementAndGet()));
+            this.inFlight = new Semaphore(maxInFlight);
+        } else {
+            this.executor = null;
+            this.inFlight = null;
+        }
+    }
+
+    public static OutputWriter fromConfig(DetectorConfig config) {
+        return new OutputWriter(config.outputThreads, config.outputQueue, config.pngLevel);
+    }
+
+    // The image and, if metadata isn't null, its text file, written by one task
+    public void write(String sourceName, BufferedImage image, String format, File target, String metadata, File metadataTarget)
+            throws IOException {
+        if (executor == null) {
+            writeNow(image, format, target, metadata, metadataTarget);
+            return;
+        }
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while queueing " + target.getName(), e);
+        }
+        CompletableFuture<Void> task;
+        try {
+            task = CompletableFuture.runAsync(() -> {
+                try {
+                    writeNow(image, format, target, metadata, metadataTarget);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } finally {
+                    inFlight.release();
+                }
+            }, executor);
+        } catch (RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+        pending.merge(sourceName, task, CompletableFuture::allOf);
+    }
+
+    private void writeNow(BufferedImage image, String format, File target, String metadata, File metadataTarget)
+            throws IOException {
+        encode(image, format, target);
+        if (metadata != null) {
+            writeAtomically(metadataTarget, out -> out.write(metadata.getBytes(StandardCharsets.UTF_8)));
+        }
+    }
+
+    // Completes once every write queued for this source name is on disk; a failed write completes it exceptionally
+    public CompletableFuture<Void> whenWritten(String sourceName) {
+        CompletableFuture<Void> writes = pending.remove(sourceName);
+        return writes != null ? writes : CompletableFuture.completedFuture(null);
+    }
+
+    private void encode(BufferedImage image, String format, File target) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format);
+        if (!writers.hasNext()) {
+            throw new IOException("No image writer for format: " + format);
+        }
+        ImageWriter writer = writers.next();
+        try {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (format.equalsIgnoreCase("png") && pngLevel >= 0 && param.canWriteCompressed()) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality((9 - pngLevel) / 9f); // The PNG writer maps quality q to level 9 - round(9q)
+            }
+            BufferedImage output = withoutOpaqueAlpha(image);
+            writeAtomically(target, out -> {
+                try (ImageOutputStream stream = ImageIO.createImageOutputStream(out)) {
+                    writer.setOutput(stream);
+                    writer.write(null, new IIOImage(output, null, null), param);
+                }
+            });
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    // An ARGB image whose pixels are all opaque, viewed as RGB over the same pixels
+    static BufferedImage withoutOpaqueAlpha(BufferedImage image) {
+        if (image.getType() != BufferedImage.TYPE_INT_ARGB || !RasterPainter.supports(image)) {
+            return image;
+        }
+        WritableRaster raster = image.getRaster();
+        DataBufferInt buffer = (DataBufferInt) raster.getDataBuffer();
+        int[] pixels = buffer.getData();
+        int stride = ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride();
+        for (int y = 0; y < image.getHeight(); y++) {
+            int start = buffer.getOffset() + y * stride;
+            for (int i = start; i < start + image.getWidth(); i++) {
+                if ((pixels[i] >>> 24) != 0xff) {
+                    return image;
+                }
+            }
+        }
+        int[] masks = {0xff0000, 0xff00, 0xff};
+        WritableRaster rgb = Raster.createWritableRaster(
+                new SinglePixelPackedSampleModel(buffer.getDataType(), image.getWidth(), image.getHeight(), stride, masks),
+                buffer, null);
+        return new BufferedImage(new DirectColorModel(24, masks[0], masks[1], masks[2]), rgb, false, null);
+    }
+
+    interface Content {
+
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    // Readers never see a half-written file; on failure nothing is left behind.
+    // Each write gets its own temp name, so concurrent writes of one target can't mix.
+    static void writeAtomically(File target, Content content) throws IOException {
+        Path temp = Files.createTempFile(target.getAbsoluteFile().getParentFile().toPath(), "." + target.getName() + ".", ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel));
+                content.writeTo(new KeepOpen(out));
+                out.flush();
+                // On disk before the rename, so a crash can't leave an empty file under the real name
+                channel.force(true);
+            }
+            Files.move(temp, target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // Content may close its stream; the channel must stay open until it is forced
+    private static final class KeepOpen extends FilterOutputStream {
+
+        KeepOpen(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+    // Waits for queued writes
+    @Override
+    public void close() {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
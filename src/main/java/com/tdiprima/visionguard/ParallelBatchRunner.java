@@ -0,0 +1,94 @@
+package com.tdiprima.visionguard;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spreads a batch of files across a fixed number of worker threads, each of
+ * which borrows its own detector from a {@link DetectorPool}. Files are
+ * scheduled largest-first within a look-ahead window of discovered files, so
+ * a single huge image does not set the finish time of the whole batch and
+ * processing can start before input discovery has finished.
+ *
+ * @author tdiprima
+ */
+public class ParallelBatchRunner {
+
+    private final DetectorPool tesseractPool;
+    private final FileProcessor processor;
+    private final int window;
+
+    public ParallelBatchRunner(DetectorPool tesseractPool, FileProcessor processor, int window) {
+        this.tesseractPool = tesseractPool;
+        this.processor = processor;
+        this.window = window;
+    }
+
+    // Sized once when queued, so ordering doesn't stat the file on every comparison
+    private record Sized(File file, long length) {
+    }
+
+    public void run(Iterable<File> files) {
+        PriorityQueue<Sized> largestFirst = new PriorityQueue<>(Comparator.comparingLong(Sized::length).reversed());
+        Semaphore idleWorkers = new Semaphore(tesseractPool.size());
+        ExecutorService executor = Executors.newFixedThreadPool(tesseractPool.size());
+        try {
+            Iterator<File> input = files.iterator();
+            while (input.hasNext() || !largestFirst.isEmpty()) {
+                // Keep the window full, then hand the largest file to the next idle worker
+                while (input.hasNext() && largestFirst.size() < window) {
+                    File next = input.next();
+                    largestFirst.add(new Sized(next, next.length()));
+                }
+                idleWorkers.acquire();
+                File file = largestFirst.poll().file();
+                executor.execute(() -> {
+                    try {
+                        processOne(file);
+                    } finally {
+                        idleWorkers.release();
+                    }
+                });
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+        } finally {
+            executor.shutdown();
+        }
+
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            processor.awaitPending();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+        }
+    }
+
+    // Errors are isolated per file, same as the sequential loop
+    private void processOne(File file) {
+        TextDetector detector;
+        try {
+            detector = tesseractPool.borrow();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        try {
+            processor.process(file, detector);
+        } catch (IOException | RuntimeException e) {
+            processor.failed(file, e);
+        } finally {
+            tesseractPool.release(detector);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.tdiprima.visionguard;
+
+import com.tdiprima.visionguard.FileProcessor.Work;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs files through separate decode, detect, act and write stages connected
+ * by bounded queues, so disk I/O, OCR and encoding overlap. Each stage has its
+ * own thread count, and a full queue blocks the stage in front of it, which
+ * keeps decoded images from piling up in the heap.
+ *
+ * @author tdiprima
+ */
+public class PipelineRunner {
+
+    // Marks the end of a queue; passed along once every thread of a stage is done
+    private static final Work END = new Work(null);
+
+    private final DetectorPool tesseractPool;
+    private final TextDetector actionDetector;
+    private final FileProcessor processor;
+    private final DetectorConfig config;
+
+    // One step of the pipeline; returns null to drop the item
+    private interface Step {
+
+        Work apply(Work work) throws IOException, InterruptedException;
+    }
+
+    public PipelineRunner(DetectorPool tesseractPool, TextDetector actionDetector, FileProcessor processor, DetectorConfig config) {
+        this.tesseractPool = tesseractPool;
+        this.actionDetector = actionDetector;
+        this.processor = processor;
+        this.config = config;
+    }
+
+    public void run(Iterable<File> files) {
+        BlockingQueue<Work> input = new ArrayBlockingQueue<>(config.queueCapacity);
+        BlockingQueue<Work> decoded = new ArrayBlockingQueue<>(config.queueCapacity);
+        BlockingQueue<Work> detected = new ArrayBlockingQueue<>(config.queueCapacity);
+        BlockingQueue<Work> acted = new ArrayBlockingQueue<>(config.queueCapacity);
+
+        List<Thread> threads = new ArrayList<>();
+        threads.addAll(startStage("decode", config.decodeThreads, input, decoded,
+                work -> processor.decodeStep(work.file)));
+        threads.addAll(startStage("detect", tesseractPool.size(), decoded, detected, this::detect));
+        threads.addAll(startStage("act", config.actThreads, detected, acted, work -> {
+            processor.actStep(work, actionDetector);
+            return work;
+        }));
+        threads.addAll(startStage("write", config.writeThreads, acted, null, work -> {
+            processor.finishStep(work);
+            return null;
+        }));
+
+        try {
+            for (File file : files) {
+                input.put(new Work(file));
+            }
+            input.put(END);
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            processor.awaitPending();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            threads.forEach(Thread::interrupt);
+        }
+    }
+
+    private Work detect(Work work) throws IOException, InterruptedException {
+        TextDetector detector = tesseractPool.borrow();
+        try {
+            return processor.detectStep(work, detector) ? work : null;
+        } finally {
+            tesseractPool.release(detector);
+        }
+    }
+
+    private List<Thread> startStage(String name, int threadCount, BlockingQueue<Work> in, BlockingQueue<Work> out, Step step) {
+        AtomicInteger running = new AtomicInteger(threadCount);
+        List<Thread> threads = new ArrayList<>(threadCount);
+        for (int i = 0; i < threadCount; i++) {
+            Thread thread = new Thread(() -> runStage(in, out, step, running), name + "-" + i);
+            thread.start();
+            threads.add(thread);
+        }
+        return threads;
+    }
+
+    private void runStage(BlockingQueue<Work> in, BlockingQueue<Work> out, Step step, AtomicInteger running) {
+        try {
+            while (true) {
+                Work work = in.take();
+                if (work == END) {
+                    in.put(END); // Let the other threads of this stage see it
+                    break;
+                }
+
+                Work next = null;
+                try {
+                    next = step.apply(work);
+                } catch (InterruptedException e) {
+                    throw e;
+                } catch (Throwable e) {
+                    // Errors too, such as a native library failing to load, so the file is still accounted for
+                    processor.failed(work, e);
+                }
+                if (next != null && out != null) {
+                    out.put(next);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // However this thread ends, the next stage must still see the end of its queue
+            if (running.decrementAndGet() == 0 && out != null) {
+                try {
+                    out.put(END);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.tdiprima.visionguard;
+
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DataBufferUShort;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+
+/**
+ * Paints solid or translucent rectangles straight into an image's
+ * DataBuffer, in its native sample type. Used by the in-place rendering mode
+ * of {@link ImageUtils} so redacting a few regions doesn't copy the whole
+ * frame. Colors are converted to gray for grayscale images and alpha is
+ * blended per sample.
+ *
+ * @author tdiprima
+ */
+public class RasterPainter {
+
+    // Byte gray, ushort gray, 3-byte BGR and int RGB/ARGB images that aren't subimages of another raster
+    public static boolean supports(BufferedImage image) {
+        switch (image.getType()) {
+            case BufferedImage.TYPE_BYTE_GRAY:
+            case BufferedImage.TYPE_USHORT_GRAY:
+            case BufferedImage.TYPE_3BYTE_BGR:
+            case BufferedImage.TYPE_INT_RGB:
+            case BufferedImage.TYPE_INT_ARGB:
+                break;
+            default:
+                return false;
+        }
+        WritableRaster raster = image.getRaster();
+        return raster.getParent() == null
+                && raster.getSampleModelTranslateX() == 0 && raster.getSampleModelTranslateY() == 0;
+    }
+
+    // Callers check supports() first
+    public static void fill(BufferedImage image, int x, int y, int width, int height, Color color) {
+        Rectangle area = new Rectangle(x, y, width, height).intersection(new Rectangle(image.getWidth(), image.getHeight()));
+        if (area.isEmpty()) {
+            return;
+        }
+
+        int rgb = color.getRGB() & 0xffffff;
+        int alpha = color.getAlpha();
+        WritableRaster raster = image.getRaster();
+        switch (image.getType()) {
+            case BufferedImage.TYPE_BYTE_GRAY:
+                fillGray8(((DataBufferByte) raster.getDataBuffer()).getData(), raster, area, gray(rgb), alpha);
+                break;
+            case BufferedImage.TYPE_USHORT_GRAY:
+                fillGray16(((DataBufferUShort) raster.getDataBuffer()).getData(), raster, area, gray(rgb) * 257, alpha);
+                break;
+            case BufferedImage.TYPE_3BYTE_BGR:
+                fillBgr(((DataBufferByte) raster.getDataBuffer()).getData(), raster, area, rgb, alpha);
+                break;
+            default:
+                fillInt(((DataBufferInt) raster.getDataBuffer()).getData(), raster, area, rgb, alpha,
+                        image.getType() == BufferedImage.TYPE_INT_ARGB);
+                break;
+        }
+    }
+
+    private static int gray(int rgb) {
+        return (((rgb >> 16) & 0xff) * 77 + ((rgb >> 8) & 0xff) * 150 + (rgb & 0xff) * 29) >> 8;
+    }
+
+    private static int blend(int under, int over, int alpha) {
+        return (under * (255 - alpha) + over * alpha + 127) / 255;
+    }
+
+    private static void fillGray8(byte[] data, WritableRaster raster, Rectangle area, int value, int alpha) {
+        int stride = ((ComponentSampleModel) raster.getSampleModel()).getScanlineStride();
+        int offset = raster.getDataBuffer().getOffset();
+        for (int y = area.y; y < area.y + area.height; y++) {
+            int start = offset + y * stride + area.x;
+            int end = start + area.width;
+            if (alpha == 255) {
+                Arrays.fill(data, start, end, (byte) value);
+                continue;
+            }
+            for (int i = start; i < end; i++) {
+                data[i] = (byte) blend(data[i] & 0xff, value, alpha);
+            }
+        }
+    }
+
+    private static void fillGray16(short[] data, WritableRaster raster, Rectangle area, int value, int alpha) {
+        int stride = ((ComponentSampleModel) raster.getSampleModel()).getScanlineStride();
+        int offset = raster.getDataBuffer().getOffset();
+        for (int y = area.y; y < area.y + area.height; y++) {
+            int start = offset + y * stride + area.x;
+            int end = start + area.width;
+            if (alpha == 255) {
+                Arrays.fill(data, start, end, (short) value);
+                continue;
+            }
+            for (int i = start; i < end; i++) {
+                data[i] = (short) blend(data[i] & 0xffff, value, alpha);
+            }
+        }
+    }
+
+    private static void fillBgr(byte[] data, WritableRaster raster, Rectangle area, int rgb, int alpha) {
+        int stride = ((ComponentSampleModel) raster.getSampleModel()).getScanlineStride();
+        int offset = raster.getDataBuffer().getOffset();
+        int r = (rgb >> 16) & 0xff;
+        int g = (rgb >> 8) & 0xff;
+        int b = rgb & 0xff;
+        for (int y = area.y; y < area.y + area.height; y++) {
+            int start = offset + y * stride + area.x * 3;
+            int end = start + area.width * 3;
+            for (int i = start; i < end; i += 3) {
+                data[i] = (byte) blend(data[i] & 0xff, b, alpha);
+                data[i + 1] = (byte) blend(data[i + 1] & 0xff, g, alpha);
+                data[i + 2] = (byte) blend(data[i + 2] & 0xff, r, alpha);
+            }
+        }
+    }
+
+    private static void fillInt(int[] data, WritableRaster raster, Rectangle area, int rgb, int alpha, boolean hasAlpha) {
+        int stride = ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride();
+        int offset = raster.getDataBuffer().getOffset();
+        for (int y = area.y; y < area.y + area.height; y++) {
+            int start = offset + y * stride + area.x;
+            int end = start + area.width;
+            if (alpha == 255) {
+                Arrays.fill(data, start, end, 0xff000000 | rgb);
+                continue;
+            }
+            for (int i = start; i < end; i++) {
+                int pixel = data[i];
+                int outAlpha = hasAlpha ? alpha + blend(pixel >>> 24, 0, alpha) : 0xff;
+                data[i] = (outAlpha << 24)
+                        | (blend((pixel >> 16) & 0xff, (rgb >> 16) & 0xff, alpha) << 16)
+                        | (blend((pixel >> 8) & 0xff, (rgb >> 8) & 0xff, alpha) << 8)
+                        | blend(pixel & 0xff, rgb & 0xff, alpha);
+            }
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package com.tdiprima.visionguard;
+
+import com.google.gson.stream.JsonWriter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import javax.imageio.ImageIO;
+
+/**
+ * Serves detection and redaction over local HTTP, so detectors stay loaded
+ * between requests instead of paying start-up for every batch. Each request
+ * runs on its own virtual thread and borrows a detector from the pool.
+ * Requests over the admission limit get 503 right away rather than queueing
+ * without bound.
+ *
+ * <ul>
+ * <li>POST /detect: image or DICOM body; the regions as JSON</li>
+ * <li>POST /redact?action=MASK: the redacted object, in the input's format</li>
+ * <li>GET /health: 200 while there is room for more requests, else 503</li>
+ * <li>GET /metrics and /metrics.json: as for {@link MetricsExporter}</li>
+ * </ul>
+ *
+ * @author tdiprima
+ */
+public class RedactionServer implements AutoCloseable {
+
+    private static final Logger logger = Logger.getLogger(RedactionServer.class.getName());
+    private static final int MAX_BODY_BYTES = 512 * 1024 * 1024;
+
+    private final DetectorPool detectors;
+    private final RoiProfiles roiProfiles;
+    private final RegionMerger merger;
+    private final OutputWriter outputWriter;
+    private final MultiFrameDetector multiFrameDetector = new MultiFrameDetector(null);
+    private final Metrics metrics = new Metrics();
+    private final Semaphore admission;
+    private final int maxInFlight;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final HttpServer server;
+
+    // A null roiProfiles OCRs every frame in full; a null merger keeps word boxes. The output
+    // writer must be synchronous, as each response reads the rendered file back right away.
+    public RedactionServer(DetectorPool detectors, RoiProfiles roiProfiles, RegionMerger merger, OutputWriter outputWriter,
+            int port, int maxInFlight) throws IOException {
+        this.detectors = detectors;
+        this.roiProfiles = roiProfiles;
+        this.merger = merger;
+        this.outputWriter = outputWriter;
+        this.maxInFlight = maxInFlight;
+        this.admission = new Semaphore(maxInFlight);
+
+        // Loopback only; put a proxy in front to expose it further
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.setExecutor(executor);
+        server.createContext("/detect", exchange -> handle(exchange, false));
+        server.createContext("/redact", exchange -> handle(exchange, true));
+        server.createContext("/health", this::health);
+        server.createContext("/metrics", exchange -> respond(exchange, 200, "text/plain; version=0.0.4",
+                metrics.toPrometheus().getBytes(StandardCharsets.UTF_8)));
+        server.createContext("/metrics.json", exchange -> respond(exchange, 200, "application/json",
+                metrics.toJson().getBytes(StandardCharsets.UTF_8)));
+        server.start();
+        System.out.println("Serving on http://localhost:" + port + " (/detect, /redact, /health, /metrics)");
+    }
+
+    private void handle(HttpExchange exchange, boolean redact) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("POST")) {
+                respondText(exchange, 405, "Use POST with the image or DICOM object as the body.");
+                return;
+            }
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            TextDetector.Action action;
+            try {
+                action = TextDetector.Action.valueOf(query.getOrDefault("action", "MASK").toUpperCase());
+            } catch (IllegalArgumentException e) {
+                respondText(exchange, 400, "Unknown action: " + query.get("action"));
+                return;
+            }
+            if (redact && action == TextDetector.Action.EXPORT_TO_FOLDER) {
+                respondText(exchange, 400, "EXPORT_TO_FOLDER writes several files; use /detect for the regions.");
+                return;
+            }
+            if (!admission.tryAcquire()) {
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                respondText(exchange, 503, "Too many requests in flight.");
+                return;
+            }
+            try {
+                byte[] body = readBody(exchange.getRequestBody());
+                if (body == null) {
+                    respondText(exchange, 413, "Body is larger than " + MAX_BODY_BYTES + " bytes.");
+                    return;
+                }
+                metrics.add(Metrics.Counter.BYTES_READ, body.length);
+                process(exchange, body, query.get("name"), redact ? action : null);
+            } catch (IOException | RuntimeException e) {
+                logger.log(Level.WARNING, "Request failed: {0}", e.getMessage());
+                metrics.increment(Metrics.Counter.FILES_FAILED);
+                respondText(exchange, 422, "Could not process the object: " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                respondText(exchange, 503, "Server is shutting down.");
+            } finally {
+                admission.release();
+            }
+        }
+    }
+
+    // A null action returns the regions instead of the redacted object
+    private void process(HttpExchange exchange, byte[] body, String name, TextDetector.Action action)
+            throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        boolean isDicom = isDicom(body, name);
+        String fileName = name != null ? new File(name).getName() : (isDicom ? "upload.dcm" : "upload.png");
+        if (isDicom && !FileProcessor.isDicomFileName(fileName)) {
+            fileName += ".dcm"; // Outputs are written as DICOM based on the extension
+        } else if (!isDicom && !InputSource.hasImageExtension(fileName)) {
+            fileName += ".png";
+        }
+
+        DICOMImageReader.DicomImage dicom = isDicom ? DICOMImageReader.open(ByteBuffer.wrap(body), fileName) : null;
+        try {
+            BufferedImage image = dicom != null ? dicom.readFrame(0) : ImageIO.read(new ByteArrayInputStream(body));
+            metrics.record(Metrics.Stage.DECODE, start);
+            if (image == null) {
+                throw new IOException("Unsupported image format");
+            }
+
+            TextDetector detector = detectors.borrow();
+            try {
+                start = System.nanoTime();
+                RoiProfiles.Profile roi = roiProfiles != null
+                        ? roiProfiles.select(dicom != null ? dicom.getAttributes() : null) : null;
+                TextDetector.DetectionResult result;
+                if (dicom != null && dicom.getNumFrames() > 1) {
+                    result = multiFrameDetector.detect(dicom, image, detector, roi);
+                } else {
+                    result = roi != null ? roi.detect(detector, image) : detector.detect(image);
+                }
+                if (result.failed) {
+                    throw new IOException("Text detection failed");
+                }
+                if (merger != null) {
+                    result.regions = merger.merge(result.regions, image.getWidth(), image.getHeight());
+                }
+                metrics.record(Metrics.Stage.DETECT, start);
+                int regions = result.regions != null ? result.regions.size() : 0;
+                metrics.add(Metrics.Counter.REGIONS, regions);
+                exchange.getResponseHeaders().set("X-VisionGuard-Regions", String.valueOf(regions));
+
+                if (action == null) {
+                    respond(exchange, 200, "application/json", regionsJson(image, result).getBytes(StandardCharsets.UTF_8));
+                } else if (regions == 0) {
+                    respond(exchange, 200, contentType(fileName), body); // Nothing to redact
+                } else {
+                    start = System.nanoTime();
+                    result.dicomSource = dicom;
+                    result.outputWriter = outputWriter;
+                    byte[] redacted = render(detector, action, result, fileName);
+                    metrics.record(Metrics.Stage.ACT, start);
+                    respond(exchange, 200, contentType(fileName), redacted);
+                }
+                metrics.increment(Metrics.Counter.FILES_DONE);
+            } finally {
+                detectors.release(detector);
+            }
+        } finally {
+            if (dicom != null) {
+                dicom.close();
+            }
+        }
+    }
+
+    // Actions write to a folder, so render into a scratch one and read the file back
+    private static byte[] render(TextDetector detector, TextDetector.Action action, TextDetector.DetectionResult result,
+            String fileName) throws IOException {
+        Path scratch = Files.createTempDirectory("visionguard-");
+        try {
+            detector.applyAction(action, result, scratch.toString(), fileName);
+            File output = new File(scratch.toFile(), fileName);
+            if (!output.isFile()) {
+                throw new IOException("The " + action + " action produced no output");
+            }
+            return Files.readAllBytes(output.toPath());
+        } finally {
+            try (Stream<Path> paths = Files.walk(scratch)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    private void health(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            int inFlight = maxInFlight - admission.availablePermits();
+            boolean ready = inFlight < maxInFlight;
+            StringWriter out = new StringWriter();
+            try (JsonWriter json = new JsonWriter(out)) {
+                json.beginObject();
+                json.name("status").value(ready ? "ok" : "busy");
+                json.name("inFlight").value(inFlight);
+                json.name("maxInFlight").value(maxInFlight);
+                json.name("detectors").value(detectors.size());
+                json.endObject();
+            }
+            respond(exchange, ready ? 200 : 503, "application/json", out.toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static String regionsJson(BufferedImage image, TextDetector.DetectionResult result) throws IOException {
+        StringWriter out = new StringWriter();
+        try (JsonWriter json = new JsonWriter(out)) {
+            json.beginObject();
+            json.name("width").value(image.getWidth());
+            json.name("height").value(image.getHeight());
+            json.name("regions").beginArray();
+            if (result.regions != null) {
+                for (TextDetector.TextRegion region : result.regions) {
+                    json.beginObject();
+                    json.name("x").value(region.x);
+                    json.name("y").value(region.y);
+                    json.name("width").value(region.width);
+                    json.name("height").value(region.height);
+                    json.name("text").value(region.text.trim());
+                    json.endObject();
+                }
+            }
+            json.endArray();
+            json.endObject();
+        }
+        return out.toString();
+    }
+
+    // By the DICM magic after the preamble, or the name when the body has no preamble
+    private static boolean isDicom(byte[] body, String name) {
+        if (body.length >= 132 && body[128] == 'D' && body[129] == 'I' && body[130] == 'C' && body[131] == 'M') {
+            return true;
+        }
+        return name != null && FileProcessor.isDicomFileName(name);
+    }
+
+    private static String contentType(String fileName) {
+        if (FileProcessor.isDicomFileName(fileName)) {
+            return "application/dicom";
+        }
+        String extension = fileName.substring(fileName.lastIndexOf('.') + 1).toLowerCase();
+        return "image/" + (extension.equals("jpg") ? "jpeg" : extension);
+    }
+
+    // Null if the body is over the limit
+    private static byte[] readBody(InputStream in) throws IOException {
+        byte[] body = in.readNBytes(MAX_BODY_BYTES + 1);
+        return body.length > MAX_BODY_BYTES ? null : body;
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                query.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return query;
+    }
+
+    private static void respondText(HttpExchange exchange, int status, String message) throws IOException {
+        respond(exchange, status, "text/plain; charset=utf-8", (message + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(1); // Give requests in flight a moment to finish
+        executor.shutdown();
+        multiFrameDetector.close();
+    }
+}
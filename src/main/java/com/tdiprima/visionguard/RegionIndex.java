@@ -0,0 +1,115 @@
+package com.tdiprima.visionguard;
+
+import com.tdiprima.visionguard.TextDetector.TextRegion;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongConsumer;
+
+/**
+ * A uniform grid over text regions for overlap and proximity queries. Each
+ * region is listed in every cell it touches, so a query only looks at the
+ * regions in the cells its rectangle covers instead of the whole list. The
+ * cell size defaults to a few times the median box height, which keeps a
+ * line of words spread over a handful of cells. Not thread-safe.
+ *
+ * @author tdiprima
+ */
+public class RegionIndex {
+
+    private final List<TextRegion> regions;
+    private final int cellSize;
+    private final Map<Long, List<Integer>> cells = new HashMap<>();
+    private final int[] seenBy; // Last query that returned each region
+    private int query = 0;
+
+    public RegionIndex(List<TextRegion> regions) {
+        this(regions, defaultCellSize(regions));
+    }
+
+    public RegionIndex(List<TextRegion> regions, int cellSize) {
+        this.regions = regions;
+        this.cellSize = Math.max(1, cellSize);
+        this.seenBy = new int[regions.size()];
+        for (int i = 0; i < regions.size(); i++) {
+            TextRegion region = regions.get(i);
+            int index = i;
+            forEachCell(region.x, region.y, region.width, region.height,
+                    key -> cells.computeIfAbsent(key, k -> new ArrayList<>()).add(index));
+        }
+    }
+
+    private static int defaultCellSize(List<TextRegion> regions) {
+        if (regions.isEmpty()) {
+            return 64;
+        }
+        int[] heights = regions.stream().mapToInt(region -> region.height).sorted().toArray();
+        return Math.max(16, 4 * heights[heights.length / 2]);
+    }
+
+    public int size() {
+        return regions.size();
+    }
+
+    public TextRegion get(int index) {
+        return regions.get(index);
+    }
+
+    // Indices of the regions that intersect the rectangle, each listed once
+    public List<Integer> search(int x, int y, int width, int height) {
+        query++;
+        List<Integer> found = new ArrayList<>();
+        forEachCell(x, y, width, height, key -> {
+            List<Integer> cell = cells.get(key);
+            if (cell == null) {
+                return;
+            }
+            for (int i : cell) {
+                if (seenBy[i] != query && intersects(regions.get(i), x, y, width, height)) {
+                    seenBy[i] = query;
+                    found.add(i);
+                }
+            }
+        });
+        return found;
+    }
+
+    public List<TextRegion> overlapping(int x, int y, int width, int height) {
+        List<TextRegion> found = new ArrayList<>();
+        for (int i : search(x, y, width, height)) {
+            found.add(regions.get(i));
+        }
+        return found;
+    }
+
+    // Other regions within distance pixels of the region's edges
+    public List<TextRegion> near(TextRegion region, int distance) {
+        List<TextRegion> found = new ArrayList<>();
+        for (int i : search(region.x - distance, region.y - distance,
+                region.width + 2 * distance, region.height + 2 * distance)) {
+            if (regions.get(i) != region) {
+                found.add(regions.get(i));
+            }
+        }
+        return found;
+    }
+
+    // Touching edges count as intersecting, so adjacent boxes are found too
+    private static boolean intersects(TextRegion region, int x, int y, int width, int height) {
+        return region.x <= x + width && x <= region.x + region.width
+                && region.y <= y + height && y <= region.y + region.height;
+    }
+
+    private void forEachCell(int x, int y, int width, int height, LongConsumer action) {
+        int firstColumn = Math.floorDiv(x, cellSize);
+        int lastColumn = Math.floorDiv(x + Math.max(0, width), cellSize);
+        int firstRow = Math.floorDiv(y, cellSize);
+        int lastRow = Math.floorDiv(y + Math.max(0, height), cellSize);
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                action.accept(((long) row << 32) | (column & 0xffffffffL));
+            }
+        }
+    }
+}
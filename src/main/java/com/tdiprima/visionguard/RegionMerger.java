@@ -0,0 +1,169 @@
+package com.tdiprima.visionguard;
+
+import com.tdiprima.visionguard.TextDetector.TextRegion;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Joins word boxes into line or block rectangles, so an action paints and a
+ * report lists a few large boxes instead of hundreds of small ones. Words on
+ * the same line (overlapping vertically, gap under about one character
+ * height) become one line; with BLOCK, lines that are stacked closely and
+ * overlap horizontally are joined as well. Merged boxes are padded and kept
+ * within the image. Boxes that largely overlap and read the same, such as
+ * the same overlay reported twice, count once in the merged text.
+ *
+ * @author tdiprima
+ */
+public class RegionMerger {
+
+    public enum Mode {
+        NONE,
+        LINE,
+        BLOCK
+    }
+
+    private static final double LINE_GAP = 1.0;        // Largest word gap, in box heights
+    private static final double LINE_OVERLAP = 0.5;    // Smallest vertical overlap, as a share of the shorter box
+    private static final double BLOCK_GAP = 0.75;      // Largest gap between lines, in line heights
+    private static final double DUPLICATE_OVERLAP = 0.5; // Intersection over union for the same text
+
+    private final Mode mode;
+    private final int padding;
+
+    public RegionMerger(Mode mode, int padding) {
+        this.mode = mode;
+        this.padding = padding;
+    }
+
+    // Null when merging is off
+    public static RegionMerger fromConfig(DetectorConfig config) {
+        return config.mergeRegions != Mode.NONE ? new RegionMerger(config.mergeRegions, config.mergePadding) : null;
+    }
+
+    public String fingerprint() {
+        return mode + "/" + padding;
+    }
+
+    // Boxes are clamped to imageWidth x imageHeight after padding
+    public List<TextRegion> merge(List<TextRegion> words, int imageWidth, int imageHeight) {
+        if (words == null || words.isEmpty()) {
+            return words;
+        }
+        List<TextRegion> merged = join(words, true);
+        if (mode == Mode.BLOCK) {
+            merged = join(merged, false);
+        }
+        List<TextRegion> padded = new ArrayList<>(merged.size());
+        for (TextRegion region : merged) {
+            int x = Math.max(0, region.x - padding);
+            int y = Math.max(0, region.y - padding);
+            int right = Math.min(imageWidth, region.x + region.width + padding);
+            int bottom = Math.min(imageHeight, region.y + region.height + padding);
+            padded.add(new TextRegion(x, y, Math.max(0, right - x), Math.max(0, bottom - y), region.text));
+        }
+        return padded;
+    }
+
+    // One pass of union-find over neighbours from the index, as lines (words) or as blocks (lines)
+    private static List<TextRegion> join(List<TextRegion> regions, boolean lines) {
+        RegionIndex index = new RegionIndex(regions);
+        int[] parent = new int[regions.size()];
+        for (int i = 0; i < parent.length; i++) {
+            parent[i] = i;
+        }
+        for (int i = 0; i < regions.size(); i++) {
+            TextRegion a = regions.get(i);
+            int reachX = lines ? (int) Math.ceil(a.height * LINE_GAP) : 0;
+            int reachY = lines ? 0 : (int) Math.ceil(a.height * BLOCK_GAP);
+            for (int j : index.search(a.x - reachX, a.y - reachY, a.width + 2 * reachX, a.height + 2 * reachY)) {
+                if (j != i && (lines ? sameLine(a, regions.get(j)) : sameBlock(a, regions.get(j)))) {
+                    union(parent, i, j);
+                }
+            }
+        }
+
+        Map<Integer, List<TextRegion>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < regions.size(); i++) {
+            groups.computeIfAbsent(find(parent, i), root -> new ArrayList<>()).add(regions.get(i));
+        }
+        List<TextRegion> joined = new ArrayList<>(groups.size());
+        for (List<TextRegion> group : groups.values()) {
+            joined.add(group.size() == 1 ? group.get(0) : bounds(group, lines));
+        }
+        return joined;
+    }
+
+    private static boolean sameLine(TextRegion a, TextRegion b) {
+        int overlap = Math.min(a.y + a.height, b.y + b.height) - Math.max(a.y, b.y);
+        if (overlap < LINE_OVERLAP * Math.min(a.height, b.height)) {
+            return false;
+        }
+        int gap = Math.max(a.x, b.x) - Math.min(a.x + a.width, b.x + b.width);
+        return gap <= LINE_GAP * Math.max(a.height, b.height);
+    }
+
+    private static boolean sameBlock(TextRegion a, TextRegion b) {
+        int overlap = Math.min(a.x + a.width, b.x + b.width) - Math.max(a.x, b.x);
+        if (overlap <= 0) {
+            return false;
+        }
+        int gap = Math.max(a.y, b.y) - Math.min(a.y + a.height, b.y + b.height);
+        return gap <= BLOCK_GAP * Math.min(a.height, b.height);
+    }
+
+    // Bounding box with the text in reading order; repeated boxes of the same text are read once
+    private static TextRegion bounds(List<TextRegion> group, boolean lines) {
+        group.sort(lines ? Comparator.comparingInt((TextRegion r) -> r.x) : Comparator.comparingInt((TextRegion r) -> r.y));
+        int left = Integer.MAX_VALUE;
+        int top = Integer.MAX_VALUE;
+        int right = Integer.MIN_VALUE;
+        int bottom = Integer.MIN_VALUE;
+        List<TextRegion> read = new ArrayList<>();
+        StringBuilder text = new StringBuilder();
+        for (TextRegion region : group) {
+            left = Math.min(left, region.x);
+            top = Math.min(top, region.y);
+            right = Math.max(right, region.x + region.width);
+            bottom = Math.max(bottom, region.y + region.height);
+            if (read.stream().anyMatch(other -> isDuplicate(region, other))) {
+                continue;
+            }
+            read.add(region);
+            if (text.length() > 0) {
+                text.append(' ');
+            }
+            text.append(region.text.trim());
+        }
+        return new TextRegion(left, top, right - left, bottom - top, text.toString());
+    }
+
+    private static boolean isDuplicate(TextRegion a, TextRegion b) {
+        if (!a.text.trim().equalsIgnoreCase(b.text.trim())) {
+            return false;
+        }
+        long width = Math.min(a.x + a.width, b.x + b.width) - Math.max(a.x, b.x);
+        long height = Math.min(a.y + a.height, b.y + b.height) - Math.max(a.y, b.y);
+        if (width <= 0 || height <= 0) {
+            return false;
+        }
+        long intersection = width * height;
+        long union = (long) a.width * a.height + (long) b.width * b.height - intersection;
+        return intersection >= DUPLICATE_OVERLAP * union;
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private static void union(int[] parent, int a, int b) {
+        parent[find(parent, a)] = find(parent, b);
+    }
+}
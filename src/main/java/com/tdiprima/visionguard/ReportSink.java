@@ -0,0 +1,32 @@
+package com.tdiprima.visionguard;
+
+import com.tdiprima.visionguard.TextDetector.DetectionResult;
+import java.io.File;
+import java.io.IOException;
+import java.util.function.LongConsumer;
+
+/**
+ * Where per-file detection reports go: one text file per image, or one JSONL
+ * stream per run.
+ *
+ * @author tdiprima
+ */
+public interface ReportSink extends AutoCloseable {
+
+    // Report one file. onWritten gets the bytes written once the report is out;
+    // it may run on another thread, and doesn't run if the write fails.
+    void write(File file, String name, DetectionResult tesseractResult, DetectionResult ollamaResult, LongConsumer onWritten);
+
+    // Where the report for the named file ends up, for the journal
+    String location(String name);
+
+    @Override
+    void close() throws IOException;
+
+    static ReportSink create(DetectorConfig config, File reportDir) throws IOException {
+        if (config.reportFormat.equals("jsonl")) {
+            return new JsonlReportSink(new File(reportDir, JsonlReportSink.FILE_NAME), config.resume, config.reportQueue);
+        }
+        return new TextReportSink(reportDir);
+    }
+}
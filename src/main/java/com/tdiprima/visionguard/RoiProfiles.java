@@ -0,0 +1,180 @@
+package com.tdiprima.visionguard;
+
+import com.tdiprima.visionguard.TextDetector.DetectionResult;
+import com.tdiprima.visionguard.TextDetector.TextRegion;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+
+/**
+ * Region-of-interest profiles that restrict OCR to the zones where burned-in
+ * annotations actually appear (corners, top and bottom bands). Profiles are
+ * read from a properties file and picked per image from the DICOM Modality
+ * and Manufacturer:
+ *
+ * <pre>
+ * # Rectangles are x,y,width,height as fractions of the frame, separated by ';'
+ * US         = 0,0,1,0.12; 0,0.9,1,0.1
+ * CT.SIEMENS = 0,0,0.3,0.2; 0.7,0,0.3,0.2; 0,0.85,1,0.15
+ * default    = 0,0,1,0.15; 0,0.85,1,0.15
+ * </pre>
+ *
+ * The most specific key wins: {@code MODALITY.MANUFACTURER} (the manufacturer
+ * prefix, case-insensitive), then {@code MODALITY}, then {@code default}.
+ * Images with no matching profile are scanned in full.
+ *
+ * @author tdiprima
+ */
+public class RoiProfiles {
+
+    public static final String DEFAULT_KEY = "default";
+
+    private final Map<String, Profile> profiles;
+
+    private RoiProfiles(Map<String, Profile> profiles) {
+        this.profiles = profiles;
+    }
+
+    public static RoiProfiles load(Path file, boolean fullFrameFallback) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+
+        Map<String, Profile> profiles = new LinkedHashMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            String name = key.equals(DEFAULT_KEY) ? DEFAULT_KEY : key.toUpperCase(Locale.ROOT);
+            profiles.put(name, new Profile(name, parseRegions(key, properties.getProperty(key)), fullFrameFallback));
+        }
+        System.out.println("Loaded " + profiles.size() + " ROI profiles from " + file);
+        return new RoiProfiles(profiles);
+    }
+
+    private static List<Rectangle.Double> parseRegions(String key, String value) throws IOException {
+        List<Rectangle.Double> regions = new ArrayList<>();
+        for (String part : value.split(";")) {
+            if (part.isBlank()) {
+                continue;
+            }
+            String[] numbers = part.trim().split("\\s*,\\s*");
+            if (numbers.length != 4) {
+                throw new IOException("ROI profile " + key + ": expected x,y,width,height but got '" + part.trim() + "'");
+            }
+            try {
+                regions.add(new Rectangle.Double(Double.parseDouble(numbers[0]), Double.parseDouble(numbers[1]),
+                        Double.parseDouble(numbers[2]), Double.parseDouble(numbers[3])));
+            } catch (NumberFormatException e) {
+                throw new IOException("ROI profile " + key + ": invalid number in '" + part.trim() + "'");
+            }
+        }
+        return regions;
+    }
+
+    // Returns null if the whole frame should be scanned
+    public Profile select(Attributes attrs) {
+        if (attrs != null) {
+            String modality = attrs.getString(Tag.Modality, "").trim().toUpperCase(Locale.ROOT);
+            String manufacturer = attrs.getString(Tag.Manufacturer, "").trim().toUpperCase(Locale.ROOT);
+
+            Profile best = null;
+            int bestLength = -1;
+            for (Profile profile : profiles.values()) {
+                int dot = profile.name.indexOf('.');
+                if (dot < 0 || !profile.name.substring(0, dot).equals(modality)) {
+                    continue;
+                }
+                String prefix = profile.name.substring(dot + 1);
+                if (manufacturer.startsWith(prefix) && prefix.length() > bestLength) {
+                    best = profile;
+                    bestLength = prefix.length();
+                }
+            }
+            if (best != null) {
+                return best;
+            }
+            if (!modality.isEmpty() && profiles.containsKey(modality)) {
+                return profiles.get(modality);
+            }
+        }
+        return profiles.get(DEFAULT_KEY);
+    }
+
+    // A set of zones to OCR, in fractions of the frame size
+    public static class Profile {
+
+        private final String name;
+        private final List<Rectangle.Double> regions;
+        private final boolean fullFrameFallback;
+
+        Profile(String name, List<Rectangle.Double> regions, boolean fullFrameFallback) {
+            this.name = name;
+            this.regions = regions;
+            this.fullFrameFallback = fullFrameFallback;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        // Distinguishes cached results produced under different profiles
+        public String fingerprint() {
+            StringBuilder sb = new StringBuilder("roi:").append(name);
+            for (Rectangle.Double r : regions) {
+                sb.append(';').append(r.x).append(',').append(r.y).append(',').append(r.width).append(',').append(r.height);
+            }
+            return sb.append(fullFrameFallback ? ";fallback" : "").toString();
+        }
+
+        // OCR each zone separately and map the boxes back to full-image coordinates
+        public DetectionResult detect(TextDetector detector, BufferedImage image) {
+            List<TextRegion> found = new ArrayList<>();
+            boolean failed = false;
+            for (Rectangle zone : toPixels(image.getWidth(), image.getHeight())) {
+                // getSubimage shares the raster, so nothing is copied here
+                DetectionResult zoneResult = detector.detect(image.getSubimage(zone.x, zone.y, zone.width, zone.height));
+                failed |= zoneResult.failed;
+                List<TextRegion> regions = zoneResult.regions;
+                if (regions == null) {
+                    continue;
+                }
+                for (TextRegion region : regions) {
+                    found.add(new TextRegion(region.x + zone.x, region.y + zone.y, region.width, region.height, region.text));
+                }
+            }
+
+            if (fullFrameFallback && !found.isEmpty()) {
+                // Text in a zone suggests more elsewhere; the full pass replaces the partial one
+                return detector.detect(image);
+            }
+            DetectionResult result = new DetectionResult(image, found);
+            result.failed = failed;
+            return result;
+        }
+
+        private List<Rectangle> toPixels(int width, int height) {
+            Rectangle frame = new Rectangle(0, 0, width, height);
+            List<Rectangle> zones = new ArrayList<>();
+            for (Rectangle.Double r : regions) {
+                Rectangle zone = new Rectangle(
+                        (int) Math.floor(r.x * width), (int) Math.floor(r.y * height),
+                        (int) Math.ceil(r.width * width), (int) Math.ceil(r.height * height)).intersection(frame);
+                if (!zone.isEmpty()) {
+                    zones.add(zone);
+                }
+            }
+            return zones;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.tdiprima.visionguard;
+
+import com.sun.jna.Pointer;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import net.sourceforge.tess4j.ITessAPI;
+import net.sourceforge.tess4j.ITessAPI.TessBaseAPI;
+import net.sourceforge.tess4j.ITessAPI.TessPageIterator;
+import net.sourceforge.tess4j.ITessAPI.TessResultIterator;
+import net.sourceforge.tess4j.TessAPI1;
+import net.sourceforge.tess4j.Word;
+
+/**
+ * A native Tesseract handle that stays initialized between images.
+ * {@code Tesseract.getWords} creates the API, loads the traineddata and tears
+ * it all down again on every call; here that happens once, in the
+ * constructor, and each image only clears the previous recognition results.
+ * Like the tess4j handle, an engine is not thread-safe.
+ *
+ * @author tdiprima
+ */
+public class TesseractEngine implements AutoCloseable {
+
+    private static final int LEVEL = ITessAPI.TessPageIteratorLevel.RIL_WORD;
+
+    private TessBaseAPI handle;
+    // Reused between images of the same size, which is the common case in a series
+    private BufferedImage gray;
+    private ByteBuffer pixels;
+
+    public TesseractEngine(String dataPath, String language, int pageSegMode) {
+        handle = TessAPI1.TessBaseAPICreate();
+        if (TessAPI1.TessBaseAPIInit3(handle, dataPath, language) != 0) {
+            TessAPI1.TessBaseAPIDelete(handle);
+            handle = null;
+            throw new IllegalStateException("Could not initialize Tesseract with data path " + dataPath + " and language " + language);
+        }
+        TessAPI1.TessBaseAPISetPageSegMode(handle, pageSegMode);
+    }
+
+    // Word boxes and text, as Tesseract.getWords(image, RIL_WORD) returns them
+    public List<Word> words(BufferedImage image) {
+        if (handle == null) {
+            throw new IllegalStateException("Tesseract engine is closed.");
+        }
+        List<Word> words = new ArrayList<>();
+        try {
+            TessAPI1.TessBaseAPISetImage(handle, toGrayBuffer(image), image.getWidth(), image.getHeight(), 1, image.getWidth());
+            TessAPI1.TessBaseAPIRecognize(handle, null);
+            TessResultIterator iterator = TessAPI1.TessBaseAPIGetIterator(handle);
+            if (iterator == null) {
+                return words; // Nothing recognized
+            }
+            try {
+                TessPageIterator page = TessAPI1.TessResultIteratorGetPageIterator(iterator);
+                TessAPI1.TessPageIteratorBegin(page);
+                IntBuffer left = IntBuffer.allocate(1);
+                IntBuffer top = IntBuffer.allocate(1);
+                IntBuffer right = IntBuffer.allocate(1);
+                IntBuffer bottom = IntBuffer.allocate(1);
+                do {
+                    Pointer text = TessAPI1.TessResultIteratorGetUTF8Text(iterator, LEVEL);
+                    if (text == null) {
+                        continue;
+                    }
+                    String word;
+                    try {
+                        word = text.getString(0);
+                    } finally {
+                        TessAPI1.TessDeleteText(text);
+                    }
+                    float confidence = TessAPI1.TessResultIteratorConfidence(iterator, LEVEL);
+                    TessAPI1.TessPageIteratorBoundingBox(page, LEVEL, left, top, right, bottom);
+                    words.add(new Word(word, confidence,
+                            new Rectangle(left.get(0), top.get(0), right.get(0) - left.get(0), bottom.get(0) - top.get(0))));
+                } while (TessAPI1.TessPageIteratorNext(page, LEVEL) == ITessAPI.TRUE);
+            } finally {
+                TessAPI1.TessResultIteratorDelete(iterator);
+            }
+        } finally {
+            // Drop this image's results but keep the engine and its traineddata loaded
+            TessAPI1.TessBaseAPIClear(handle);
+        }
+        return words;
+    }
+
+    // 8-bit gray, one byte per pixel with no row padding, in a direct buffer for the native call
+    private ByteBuffer toGrayBuffer(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        BufferedImage source = image;
+        if (image.getType() != BufferedImage.TYPE_BYTE_GRAY || !RasterPainter.supports(image)) {
+            if (gray == null || gray.getWidth() != width || gray.getHeight() != height) {
+                gray = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+            }
+            Graphics2D g2d = gray.createGraphics();
+            g2d.drawImage(image, 0, 0, null);
+            g2d.dispose();
+            source = gray;
+        }
+
+        byte[] data = ((DataBufferByte) source.getRaster().getDataBuffer()).getData();
+        int length = width * height;
+        if (pixels == null || pixels.capacity() < length) {
+            pixels = ByteBuffer.allocateDirect(length);
+        }
+        pixels.clear();
+        pixels.put(data, source.getRaster().getDataBuffer().getOffset(), length);
+        pixels.flip();
+        return pixels;
+    }
+
+    @Override
+    public void close() {
+        if (handle != null) {
+            TessAPI1.TessBaseAPIEnd(handle);
+            TessAPI1.TessBaseAPIDelete(handle);
+            handle = null;
+        }
+    }
+}
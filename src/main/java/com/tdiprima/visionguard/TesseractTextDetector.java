@@ -1,9 +1,17 @@
 package com.tdiprima.visionguard;
 
 import net.sourceforge.tess4j.Tesseract;
+import net.sourceforge.tess4j.Word;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -16,20 +24,36 @@ import java.util.logging.Logger;
  */
 public class TesseractTextDetector implements TextDetector {
 
+    private static final int PAGE_SEG_MODE = 1;
+
     private Tesseract tesseract;
+    private TesseractEngine engine = null; // Kept initialized across images with --warmTesseract
+    private String dataPath;
+    private String language = "eng";
     private static final Logger logger = Logger.getLogger(TesseractTextDetector.class.getName());
     private int minWidth = DEFAULT_MIN_WIDTH;
     private int minHeight = DEFAULT_MIN_HEIGHT;
     private int maxWidth = DEFAULT_MAX_WIDTH;
     private int maxHeight = DEFAULT_MAX_HEIGHT;
+    private boolean dicomInPlace = false;
+    private boolean renderInPlace = false;
+    private OcrPreprocessor preprocessor = null;
+    private int tileSize = 0; // Images larger than this on a side are OCR'd in tiles; 0 disables tiling
+    private int tileOverlap = 0;
+    private BlockingQueue<TesseractTextDetector> tileWorkers = null; // Each with its own Tesseract handle
+    private ExecutorService tileExecutor = null;
 
     @Override
     public void setupParameters(String... params) {
         tesseract = new Tesseract();
-        tesseract.setDatapath(params[0]); // Path to Tesseract data
+        dataPath = params[0];
+        tesseract.setDatapath(dataPath); // Path to Tesseract data
         if (params.length > 1) {
-            tesseract.setLanguage(params[1]); // Language (e.g., "eng")
+            language = params[1];
+            tesseract.setLanguage(language); // Language (e.g., "eng")
         }
+        // Set Tesseract page segmentation mode to single block of text
+        tesseract.setPageSegMode(PAGE_SEG_MODE); // PSM_SINGLE_BLOCK
     }
 
     @Override
@@ -38,6 +62,40 @@ public class TesseractTextDetector implements TextDetector {
         this.minHeight = config.minHeight;
         this.maxWidth = config.maxWidth;
         this.maxHeight = config.maxHeight;
+        this.dicomInPlace = config.dicomInPlace;
+        this.renderInPlace = config.renderInPlace;
+        this.preprocessor = OcrPreprocessor.fromConfig(config);
+        if (config.warmTesseract && engine == null) {
+            startEngine();
+        }
+        if (config.tiling && tileWorkers == null) {
+            this.tileSize = config.tileSize;
+            this.tileOverlap = Math.min(config.tileOverlap, tileSize / 2);
+            this.tileWorkers = new ArrayBlockingQueue<>(config.tileThreads);
+            for (int i = 0; i < config.tileThreads; i++) {
+                tileWorkers.add(newTileWorker());
+            }
+            this.tileExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        }
+    }
+
+    private void startEngine() {
+        try {
+            engine = new TesseractEngine(dataPath, language, PAGE_SEG_MODE);
+        } catch (IllegalStateException | UnsatisfiedLinkError e) {
+            logger.log(Level.SEVERE, "Falling back to per-image Tesseract initialization: {0}", e.getMessage());
+        }
+    }
+
+    // Only recognizes; the size constraints are applied to the merged result
+    private TesseractTextDetector newTileWorker() {
+        TesseractTextDetector worker = new TesseractTextDetector();
+        worker.setupParameters(dataPath, language);
+        worker.preprocessor = preprocessor;
+        if (engine != null) {
+            worker.startEngine();
+        }
+        return worker;
     }
 
     // Dynamically change constraints after initialization
@@ -52,36 +110,130 @@ public class TesseractTextDetector implements TextDetector {
         this.maxHeight = maxHeight;
     }
 
+    @Override
+    public String settingsFingerprint() {
+        return String.join("|", getClass().getName(), dataPath, language,
+                String.valueOf(minWidth), String.valueOf(minHeight), String.valueOf(maxWidth), String.valueOf(maxHeight),
+                preprocessor != null ? preprocessor.fingerprint() : "raw",
+                tileWorkers != null ? "tiles:" + tileSize + "/" + tileOverlap : "whole",
+                engine != null ? "warm" : "cold"); // The warm engine gets an 8-bit gray copy, tess4j the image as is
+    }
+
     @Override
     public DetectionResult detect(BufferedImage image) {
         List<TextRegion> regions = new ArrayList<>();
 
         try {
-            // Set Tesseract page segmentation mode to single block of text
-            tesseract.setPageSegMode(1); // PSM_SINGLE_BLOCK
-
-            // Perform OCR and get word-level bounding boxes
-            var result = tesseract.getWords(image, 1); // Level 1: WORD bounding boxes
-            for (var word : result) {
-                int x = word.getBoundingBox().x;
-                int y = word.getBoundingBox().y;
-                int width = word.getBoundingBox().width;
-                int height = word.getBoundingBox().height;
-
-                // System.out.printf("Detected region: [x=%d, y=%d, width=%d, height=%d, text='%s']%n", x, y, width, height, word.getText().trim());
+            boolean tiled = tileWorkers != null && (image.getWidth() > tileSize || image.getHeight() > tileSize);
+            for (TextRegion word : tiled ? recognizeTiled(image) : recognize(image)) {
+                // System.out.printf("Detected region: [x=%d, y=%d, width=%d, height=%d, text='%s']%n", word.x, word.y, word.width, word.height, word.text.trim());
                 // Apply size constraints
-                if (width >= minWidth && height >= minHeight && width <= maxWidth && height <= maxHeight) {
-                    regions.add(new TextRegion(x, y, width, height, word.getText()));
+                if (word.width >= minWidth && word.height >= minHeight && word.width <= maxWidth && word.height <= maxHeight) {
+                    regions.add(word);
                 }
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return failedResult(image);
         } catch (Exception e) {
             logger.log(Level.SEVERE, "Unexpected error during Tesseract OCR: {0}", e.getMessage());
-            return new DetectionResult(image, regions); // Return image with empty regions
+            return failedResult(image);
         }
 
         return new DetectionResult(image, regions);
     }
 
+    private static DetectionResult failedResult(BufferedImage image) {
+        DetectionResult result = new DetectionResult(image, new ArrayList<>());
+        result.failed = true;
+        return result;
+    }
+
+    // Every word box, in the image's coordinates
+    private List<TextRegion> recognize(BufferedImage image) {
+        List<TextRegion> words = new ArrayList<>();
+        // Perform OCR and get word-level bounding boxes
+        // Boxes come back in preprocessed coordinates and are mapped to the original image
+        BufferedImage ocrImage = preprocessor != null ? preprocessor.apply(image) : image;
+        List<Word> result = engine != null
+                ? engine.words(ocrImage)
+                : tesseract.getWords(ocrImage, 1); // Level 1: WORD bounding boxes
+        for (Word word : result) {
+            Rectangle box = word.getBoundingBox();
+            if (preprocessor != null) {
+                box = preprocessor.toOriginal(box, image.getWidth(), image.getHeight());
+            }
+            words.add(new TextRegion(box.x, box.y, box.width, box.height, word.getText()));
+        }
+        return words;
+    }
+
+    // Overlapping tiles, OCR'd in parallel. A word is kept only by the tile that owns its center,
+    // the owner being the nearer tile inside an overlap, so words in an overlap are reported once.
+    // Tiles are views of the image; OCR buffers are per tile, so memory follows the tile size.
+    private List<TextRegion> recognizeTiled(BufferedImage image) throws InterruptedException, ExecutionException {
+        int[] xs = tileStarts(image.getWidth());
+        int[] ys = tileStarts(image.getHeight());
+        List<Future<List<TextRegion>>> tiles = new ArrayList<>();
+        for (int row = 0; row < ys.length; row++) {
+            for (int column = 0; column < xs.length; column++) {
+                int x = xs[column];
+                int y = ys[row];
+                BufferedImage tile = image.getSubimage(x, y,
+                        Math.min(tileSize, image.getWidth() - x), Math.min(tileSize, image.getHeight() - y));
+                int left = column == 0 ? Integer.MIN_VALUE : ownershipCut(xs, column - 1);
+                int right = column == xs.length - 1 ? Integer.MAX_VALUE : ownershipCut(xs, column);
+                int top = row == 0 ? Integer.MIN_VALUE : ownershipCut(ys, row - 1);
+                int bottom = row == ys.length - 1 ? Integer.MAX_VALUE : ownershipCut(ys, row);
+                tiles.add(tileExecutor.submit(() -> recognizeTile(tile, x, y, left, top, right, bottom)));
+            }
+        }
+
+        List<TextRegion> words = new ArrayList<>();
+        for (Future<List<TextRegion>> tile : tiles) {
+            words.addAll(tile.get());
+        }
+        return words;
+    }
+
+    private List<TextRegion> recognizeTile(BufferedImage tile, int x, int y, int left, int top, int right, int bottom)
+            throws InterruptedException {
+        TesseractTextDetector worker = tileWorkers.take();
+        try {
+            List<TextRegion> kept = new ArrayList<>();
+            for (TextRegion word : worker.recognize(tile)) {
+                word.x += x;
+                word.y += y;
+                int centerX = word.x + word.width / 2;
+                int centerY = word.y + word.height / 2;
+                if (centerX >= left && centerX < right && centerY >= top && centerY < bottom) {
+                    kept.add(word);
+                }
+            }
+            return kept;
+        } finally {
+            tileWorkers.add(worker);
+        }
+    }
+
+    // Equal tiles of tileSize, spread evenly so neighbours overlap by at least tileOverlap
+    private int[] tileStarts(int length) {
+        if (length <= tileSize) {
+            return new int[]{0};
+        }
+        int count = (int) Math.ceil((double) (length - tileOverlap) / (tileSize - tileOverlap));
+        int[] starts = new int[count];
+        for (int i = 0; i < count; i++) {
+            starts[i] = (int) ((long) (length - tileSize) * i / (count - 1));
+        }
+        return starts;
+    }
+
+    // Middle of the overlap between tile i and tile i + 1
+    private int ownershipCut(int[] starts, int i) {
+        return (starts[i + 1] + starts[i] + tileSize) / 2;
+    }
+
     @Override
     public void applyAction(Action action, DetectionResult result, String outputPath, String originalFileName) {
         if (result.regions == null || result.regions.isEmpty()) {
@@ -91,34 +243,40 @@ public class TesseractTextDetector implements TextDetector {
 
         switch (action) {
             case OUTLINE:
-                BufferedImage outlinedImage = ImageUtils.outlineTextRegions(result.modifiedImage, result.regions, originalFileName);
-                ImageUtils.saveImage(outlinedImage, outputPath, originalFileName);
+                BufferedImage outlinedImage = ImageUtils.outlineTextRegions(result.modifiedImage, result.regions, originalFileName, renderInPlace);
+                ImageUtils.saveImage(outlinedImage, outputPath, originalFileName, result.outputWriter);
                 break;
 
             case MASK:
-                BufferedImage maskedImage = ImageUtils.maskTextRegions(result.modifiedImage, result.regions);
-                ImageUtils.saveImage(maskedImage, outputPath, originalFileName);
+                if (redactInPlace(result, DicomRedactionWriter.Fill.BLACK, outputPath, originalFileName)) {
+                    break;
+                }
+                BufferedImage maskedImage = ImageUtils.maskTextRegions(result.modifiedImage, result.regions, renderInPlace);
+                ImageUtils.saveImage(maskedImage, outputPath, originalFileName, result.outputWriter);
                 break;
 
             case BURN:
                 String extension = originalFileName.substring(originalFileName.lastIndexOf('.') + 1).toLowerCase();
                 BufferedImage burnedImage;
                 if (extension.equals("dcm") || extension.equals("dicom")) {
-                    burnedImage = ImageUtils.burnDICOMTextRegions(result.modifiedImage, result.regions);
+                    if (redactInPlace(result, DicomRedactionWriter.Fill.WHITE, outputPath, originalFileName)) {
+                        break;
+                    }
+                    burnedImage = ImageUtils.burnDICOMTextRegions(result.modifiedImage, result.regions, renderInPlace);
                 } else {
-                    burnedImage = ImageUtils.burnTextRegions(result.modifiedImage, result.regions);
+                    burnedImage = ImageUtils.burnTextRegions(result.modifiedImage, result.regions, renderInPlace);
                 }
 
-                ImageUtils.saveImage(burnedImage, outputPath, originalFileName);
+                ImageUtils.saveImage(burnedImage, outputPath, originalFileName, result.outputWriter);
                 break;
 
             case EXPORT_TO_FOLDER:
-                ImageUtils.saveImageWithMetadata(result.modifiedImage, result.regions, outputPath, originalFileName);
+                ImageUtils.saveImageWithMetadata(result.modifiedImage, result.regions, outputPath, originalFileName, result.outputWriter);
                 break;
 
             case FLAG_FOR_REVIEW:
-                BufferedImage flaggedImage = ImageUtils.addWatermark(result.modifiedImage, "QUARANTINE");
-                ImageUtils.saveImage(flaggedImage, outputPath, originalFileName);
+                BufferedImage flaggedImage = ImageUtils.addWatermark(result.modifiedImage, "QUARANTINE", renderInPlace);
+                ImageUtils.saveImage(flaggedImage, outputPath, originalFileName, result.outputWriter);
                 break;
 
             default:
@@ -126,4 +284,25 @@ public class TesseractTextDetector implements TextDetector {
         }
     }
 
+    @Override
+    public void close() {
+        if (engine != null) {
+            engine.close();
+            engine = null;
+        }
+        if (tileWorkers != null) {
+            tileExecutor.shutdown();
+            for (TesseractTextDetector worker : tileWorkers) {
+                worker.close();
+            }
+            tileWorkers = null;
+        }
+    }
+
+    // Write the redacted DICOM in its original encoding, if enabled and supported
+    private boolean redactInPlace(DetectionResult result, DicomRedactionWriter.Fill fill, String outputPath, String originalFileName) {
+        return dicomInPlace && result.dicomSource != null
+                && ImageUtils.saveRedactedDICOM(result.dicomSource, result.regions, fill, outputPath, originalFileName);
+    }
+
 }
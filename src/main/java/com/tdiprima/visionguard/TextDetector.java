@@ -25,6 +25,15 @@ public interface TextDetector {
 
     // Configurable bounding box constraints
     void setBoundingBoxConstraints(int minWidth, int minHeight, int maxWidth, int maxHeight);
+
+    // Release native resources; the detector is not used afterwards
+    default void close() {
+    }
+
+    // Settings that change detection output, used to key cached results
+    default String settingsFingerprint() {
+        return getClass().getName();
+    }
     
     // Represents a detected region of text
     class TextRegion {
@@ -47,6 +56,9 @@ public interface TextDetector {
         public BufferedImage modifiedImage;
         public List<TextRegion> regions;
         public String rawResponse; // New field
+        public DICOMImageReader.DicomImage dicomSource; // Open source object, for in-place DICOM redaction
+        public boolean failed; // Detection did not finish, so no regions doesn't mean no text
+        public OutputWriter outputWriter; // For the actions' images; null writes them synchronously
 
         public DetectionResult(BufferedImage modifiedImage, List<TextRegion> regions) {
             this.modifiedImage = modifiedImage;
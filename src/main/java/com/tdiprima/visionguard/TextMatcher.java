@@ -0,0 +1,321 @@
+package com.tdiprima.visionguard;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Matches Tesseract words against Ollama lines in roughly linear time.
+ * Text is normalized once (case, common OCR confusions such as 0/O and 1/l).
+ * One Aho-Corasick pass over the Ollama lines finds every word contained in
+ * a line. Words and lines left over are then compared token by token within
+ * a small edit distance, using a bigram index to find candidates.
+ *
+ * @author tdiprima
+ */
+public class TextMatcher {
+
+    private static final int MIN_FUZZY_LENGTH = 3;
+
+    public static class Result {
+
+        public final List<String> unmatchedTesseract = new ArrayList<>();
+        public final List<String> unmatchedOllama = new ArrayList<>();
+        public int exactMatches;   // Tesseract words found verbatim (after normalization)
+        public int fuzzyMatches;   // Tesseract words found within the edit distance
+        public double tesseractAgreement; // Share of Tesseract words matched
+        public double ollamaAgreement;    // Share of Ollama lines matched
+        public double agreement;          // Harmonic mean of the two
+
+        private void score(int words, int lines) {
+            tesseractAgreement = words == 0 ? 1.0 : (double) (words - unmatchedTesseract.size()) / words;
+            ollamaAgreement = lines == 0 ? 1.0 : (double) (lines - unmatchedOllama.size()) / lines;
+            double sum = tesseractAgreement + ollamaAgreement;
+            agreement = sum == 0 ? 0 : 2 * tesseractAgreement * ollamaAgreement / sum;
+        }
+    }
+
+    public static Result match(List<String> tesseractWords, List<String> ollamaLines) {
+        String[] words = tesseractWords.stream().map(TextMatcher::normalize).toArray(String[]::new);
+        String[] lines = ollamaLines.stream().map(TextMatcher::normalize).toArray(String[]::new);
+        boolean[] wordMatched = new boolean[words.length];
+        boolean[] lineMatched = new boolean[lines.length];
+
+        // Exact: a word contained in a line matches both, as String.contains did
+        Automaton automaton = new Automaton(words);
+        for (int l = 0; l < lines.length; l++) {
+            lineMatched[l] = automaton.scan(lines[l], wordMatched);
+        }
+        int exact = 0;
+        for (int w = 0; w < words.length; w++) {
+            if (words[w].isEmpty()) {
+                wordMatched[w] = true; // An empty string is contained in anything
+            }
+            if (wordMatched[w]) {
+                exact++;
+            }
+        }
+
+        // Fuzzy: leftover words against the tokens of every line
+        List<String> lineTokens = new ArrayList<>();
+        List<Integer> tokenLine = new ArrayList<>();
+        for (int l = 0; l < lines.length; l++) {
+            for (String token : tokenize(lines[l])) {
+                lineTokens.add(token);
+                tokenLine.add(l);
+            }
+        }
+        FuzzyIndex lineIndex = new FuzzyIndex(lineTokens);
+        int fuzzy = 0;
+        for (int w = 0; w < words.length; w++) {
+            if (wordMatched[w]) {
+                continue;
+            }
+            int token = lineIndex.find(words[w]);
+            if (token >= 0) {
+                wordMatched[w] = true;
+                lineMatched[tokenLine.get(token)] = true;
+                fuzzy++;
+            }
+        }
+
+        // Fuzzy: leftover lines whose tokens are near any word
+        List<String> wordList = List.of(words);
+        FuzzyIndex wordIndex = new FuzzyIndex(wordList);
+        for (int l = 0; l < lines.length; l++) {
+            if (lineMatched[l]) {
+                continue;
+            }
+            for (String token : tokenize(lines[l])) {
+                if (wordIndex.find(token) >= 0) {
+                    lineMatched[l] = true;
+                    break;
+                }
+            }
+        }
+
+        Result result = new Result();
+        result.exactMatches = exact;
+        result.fuzzyMatches = fuzzy;
+        for (int w = 0; w < words.length; w++) {
+            if (!wordMatched[w]) {
+                result.unmatchedTesseract.add(tesseractWords.get(w).trim());
+            }
+        }
+        for (int l = 0; l < lines.length; l++) {
+            if (!lineMatched[l]) {
+                result.unmatchedOllama.add(ollamaLines.get(l));
+            }
+        }
+        result.score(words.length, lines.length);
+        return result;
+    }
+
+    // Lower case with common OCR confusions folded together
+    static String normalize(String text) {
+        String trimmed = text.trim();
+        StringBuilder sb = new StringBuilder(trimmed.length());
+        for (int i = 0; i < trimmed.length(); i++) {
+            char c = Character.toLowerCase(trimmed.charAt(i));
+            switch (c) {
+                case '0' -> sb.append('o');
+                case '1', 'i', '|', '!' -> sb.append('l');
+                case '5' -> sb.append('s');
+                case '8' -> sb.append('b');
+                default -> sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static List<String> tokenize(String line) {
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= line.length(); i++) {
+            boolean part = i < line.length() && Character.isLetterOrDigit(line.charAt(i));
+            if (part && start < 0) {
+                start = i;
+            } else if (!part && start >= 0) {
+                tokens.add(line.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    // Edits allowed for a token of this length
+    private static int maxEdits(int length) {
+        if (length < MIN_FUZZY_LENGTH) {
+            return 0;
+        }
+        return length < 8 ? 1 : 2;
+    }
+
+    // Levenshtein distance, or maxEdits + 1 as soon as it is known to exceed maxEdits
+    static int boundedDistance(String a, String b, int maxEdits) {
+        if (Math.abs(a.length() - b.length()) > maxEdits) {
+            return maxEdits + 1;
+        }
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > maxEdits) {
+                return maxEdits + 1;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+
+    // Aho-Corasick over the normalized words
+    private static class Automaton {
+
+        private final List<Map<Character, Integer>> next = new ArrayList<>();
+        private final List<Integer> fail = new ArrayList<>();
+        private final List<Integer> outputLink = new ArrayList<>(); // Nearest suffix state that ends a word, or -1
+        private final List<List<Integer>> ends = new ArrayList<>();  // Words ending exactly here
+
+        Automaton(String[] words) {
+            addState();
+            for (int w = 0; w < words.length; w++) {
+                if (words[w].isEmpty()) {
+                    continue;
+                }
+                int state = 0;
+                for (int i = 0; i < words[w].length(); i++) {
+                    char c = words[w].charAt(i);
+                    Integer target = next.get(state).get(c);
+                    if (target == null) {
+                        target = addState();
+                        next.get(state).put(c, target);
+                    }
+                    state = target;
+                }
+                ends.get(state).add(w);
+            }
+
+            // Breadth-first, so every fail target is finished before it is used
+            Queue<Integer> queue = new ArrayDeque<>();
+            for (int child : next.get(0).values()) {
+                fail.set(child, 0);
+                queue.add(child);
+            }
+            while (!queue.isEmpty()) {
+                int state = queue.poll();
+                for (Map.Entry<Character, Integer> edge : next.get(state).entrySet()) {
+                    int child = edge.getValue();
+                    int f = fail.get(state);
+                    while (f > 0 && !next.get(f).containsKey(edge.getKey())) {
+                        f = fail.get(f);
+                    }
+                    Integer target = next.get(f).get(edge.getKey());
+                    int childFail = target != null && target != child ? target : 0;
+                    fail.set(child, childFail);
+                    outputLink.set(child, ends.get(childFail).isEmpty() ? outputLink.get(childFail) : childFail);
+                    queue.add(child);
+                }
+            }
+        }
+
+        private int addState() {
+            next.add(new HashMap<>());
+            fail.add(0);
+            outputLink.add(-1);
+            ends.add(new ArrayList<>());
+            return next.size() - 1;
+        }
+
+        // Marks every word found in text; returns whether any was found
+        boolean scan(String text, boolean[] found) {
+            boolean any = false;
+            int state = 0;
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                while (state > 0 && !next.get(state).containsKey(c)) {
+                    state = fail.get(state);
+                }
+                state = next.get(state).getOrDefault(c, 0);
+                for (int s = ends.get(state).isEmpty() ? outputLink.get(state) : state; s >= 0; s = outputLink.get(s)) {
+                    for (int w : ends.get(s)) {
+                        found[w] = true;
+                    }
+                    any = true;
+                }
+            }
+            return any;
+        }
+    }
+
+    // Bigram index over tokens for bounded edit-distance lookups
+    private static class FuzzyIndex {
+
+        private final List<String> tokens;
+        private final Map<String, List<Integer>> postings = new HashMap<>();
+        private final int[] seenBy; // Last query that looked at each token
+        private int query = 0;
+
+        FuzzyIndex(List<String> tokens) {
+            this.tokens = tokens;
+            this.seenBy = new int[tokens.size()];
+            for (int t = 0; t < tokens.size(); t++) {
+                if (tokens.get(t).length() >= MIN_FUZZY_LENGTH - 1) {
+                    for (String gram : bigrams(tokens.get(t))) {
+                        postings.computeIfAbsent(gram, key -> new ArrayList<>()).add(t);
+                    }
+                }
+            }
+        }
+
+        // A token within the edit distance allowed for text, or -1
+        int find(String text) {
+            int maxEdits = maxEdits(text.length());
+            if (maxEdits == 0) {
+                return -1;
+            }
+            query++;
+
+            // Each edit changes at most two padded bigrams, so a close token shares
+            // at least one of any 2 * maxEdits + 1 of them; probe the rarest
+            List<String> grams = bigrams(text);
+            grams.sort((a, b) -> Integer.compare(postings.getOrDefault(a, List.of()).size(),
+                    postings.getOrDefault(b, List.of()).size()));
+            for (String gram : grams.subList(0, Math.min(grams.size(), 2 * maxEdits + 1))) {
+                for (int t : postings.getOrDefault(gram, List.of())) {
+                    if (seenBy[t] == query) {
+                        continue;
+                    }
+                    seenBy[t] = query;
+                    if (boundedDistance(text, tokens.get(t), maxEdits) <= maxEdits) {
+                        return t;
+                    }
+                }
+            }
+            return -1;
+        }
+
+        // Padded, so "abc" gives "^a", "ab", "bc", "c$"
+        private static List<String> bigrams(String token) {
+            String padded = "^" + token + "$";
+            List<String> grams = new ArrayList<>(padded.length() - 1);
+            for (int i = 0; i + 2 <= padded.length(); i++) {
+                grams.add(padded.substring(i, i + 2));
+            }
+            return grams;
+        }
+    }
+}
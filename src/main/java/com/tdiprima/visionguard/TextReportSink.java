@@ -0,0 +1,37 @@
+package com.tdiprima.visionguard;
+
+import com.tdiprima.visionguard.TextDetector.DetectionResult;
+import java.io.File;
+import java.util.function.LongConsumer;
+
+/**
+ * The original report layout: a free-form {@code <name>_report.txt} per
+ * image, written synchronously by {@link DetectorValidator}.
+ *
+ * @author tdiprima
+ */
+public class TextReportSink implements ReportSink {
+
+    private final File reportDir;
+
+    public TextReportSink(File reportDir) {
+        this.reportDir = reportDir;
+    }
+
+    @Override
+    public void write(File file, String name, DetectionResult tesseractResult, DetectionResult ollamaResult, LongConsumer onWritten) {
+        File report = new File(reportDir, name + "_report.txt");
+        if (DetectorValidator.validate(tesseractResult, ollamaResult, report.getPath())) {
+            onWritten.accept(report.length());
+        }
+    }
+
+    @Override
+    public String location(String name) {
+        return new File(reportDir, name + "_report.txt").getAbsolutePath();
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,141 @@
+package com.tdiprima.visionguard;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A cheap "no text here" gate ahead of OCR. One pass over the raster counts
+ * stroke-like runs per row: a strong edge followed by the opposite edge
+ * within a few pixels, which is what a scan line through a glyph looks like.
+ * Anatomy and smooth backgrounds produce few such runs per row, a line of
+ * burned-in text produces many. Images whose busiest row stays below the
+ * threshold skip OCR.
+ *
+ * Every Nth skipped image is OCR'd anyway and processed as usual, and the
+ * outcome is written to {@value #AUDIT_FILE} in the report directory so the
+ * false-negative rate can be checked.
+ *
+ * @author tdiprima
+ */
+public class TextTriage implements AutoCloseable {
+
+    public static final String AUDIT_FILE = "triage_audit.tsv";
+
+    private static final Logger logger = Logger.getLogger(TextTriage.class.getName());
+
+    private static final int EDGE_CONTRAST = 60; // On an 8-bit scale
+    private static final int MAX_STROKE_WIDTH = 12;
+
+    private final int minStrokesPerRow;
+    private final int auditEvery;
+    private final BufferedWriter audit;
+
+    private final AtomicLong checked = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong audited = new AtomicLong();
+    private final AtomicLong falseNegatives = new AtomicLong();
+
+    public TextTriage(int minStrokesPerRow, int auditEvery, File reportDir) throws IOException {
+        this.minStrokesPerRow = minStrokesPerRow;
+        this.auditEvery = auditEvery;
+        this.audit = Files.newBufferedWriter(new File(reportDir, AUDIT_FILE).toPath(), StandardCharsets.UTF_8);
+        audit.write("result\tstrokes\tfile\tregions\n");
+    }
+
+    public enum Decision {
+        OCR,   // May contain text
+        SKIP,  // Clearly no text
+        AUDIT  // No text by triage, but OCR'd to sample the false-negative rate
+    }
+
+    public Decision decide(BufferedImage image) {
+        checked.incrementAndGet();
+        if (maxStrokesPerRow(image) >= minStrokesPerRow) {
+            return Decision.OCR;
+        }
+        return skipped.incrementAndGet() % auditEvery == 0 ? Decision.AUDIT : Decision.SKIP;
+    }
+
+    // Record what OCR found on an audited image
+    public void recordAudit(File file, BufferedImage image, int regions) {
+        audited.incrementAndGet();
+        if (regions > 0) {
+            falseNegatives.incrementAndGet();
+        }
+        String line = (regions > 0 ? "FALSE_NEGATIVE" : "OK") + "\t" + maxStrokesPerRow(image) + "\t"
+                + file.getAbsolutePath() + "\t" + regions + "\n";
+        synchronized (audit) {
+            try {
+                audit.write(line);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Failed to write triage audit: {0}", e.getMessage());
+            }
+        }
+    }
+
+    public int maxStrokesPerRow(BufferedImage image) {
+        Raster raster = image.getRaster();
+        int width = raster.getWidth();
+        int height = raster.getHeight();
+        int bands = raster.getNumBands();
+        // Bring 16-bit grayscale down to the 8-bit scale EDGE_CONTRAST is defined on
+        int shift = Math.max(0, image.getColorModel().getComponentSize(0) - 8);
+
+        int[] samples = new int[width * bands];
+        int max = 0;
+        for (int y = 0; y < height; y++) {
+            raster.getPixels(0, y, width, 1, samples);
+
+            int strokes = 0;
+            int previous = luminance(samples, 0, bands, shift);
+            int lastEdgeX = -MAX_STROKE_WIDTH - 1;
+            int lastEdgeSign = 0;
+            for (int x = 1; x < width; x++) {
+                int value = luminance(samples, x, bands, shift);
+                int delta = value - previous;
+                previous = value;
+                if (delta >= EDGE_CONTRAST || delta <= -EDGE_CONTRAST) {
+                    int sign = delta > 0 ? 1 : -1;
+                    if (sign == -lastEdgeSign && x - lastEdgeX <= MAX_STROKE_WIDTH) {
+                        strokes++;
+                    }
+                    lastEdgeX = x;
+                    lastEdgeSign = sign;
+                }
+            }
+            if (strokes > max) {
+                max = strokes;
+            }
+        }
+        return max;
+    }
+
+    private static int luminance(int[] samples, int x, int bands, int shift) {
+        int i = x * bands;
+        if (bands < 3) {
+            return samples[i] >> shift;
+        }
+        return (samples[i] * 77 + samples[i + 1] * 150 + samples[i + 2] * 29) >> 8;
+    }
+
+    @Override
+    public void close() throws IOException {
+        long total = checked.get();
+        if (total > 0) {
+            System.out.printf("Triage skipped OCR for %d of %d images (%.1f%%); audited %d, false negatives %d.%n",
+                    skipped.get() - audited.get(), total, 100.0 * (skipped.get() - audited.get()) / total,
+                    audited.get(), falseNegatives.get());
+        }
+        synchronized (audit) {
+            audit.close();
+        }
+    }
+}
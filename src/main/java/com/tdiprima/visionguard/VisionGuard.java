@@ -1,11 +1,15 @@
 package com.tdiprima.visionguard;
 
-import com.tdiprima.visionguard.TextDetector.DetectionResult;
-import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.ServiceLoader;
-import javax.imageio.ImageIO;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This is the main application class that orchestrates the text detection
@@ -22,69 +26,237 @@ public class VisionGuard {
             System.exit(0);
         }
 
+        if (args.length > 0 && args[0].startsWith("--serve=")) {
+            serve(DetectorConfig.fromArgs(args));
+            return;
+        }
+
         if (args.length < 4) {
             printUsage();
             System.exit(1);
         }
 
+        if (args[0].startsWith("--receive=")) {
+            receive(args);
+            return;
+        }
+
         // Parse CLI arguments
         String directoryPath = args[0];
         String actionStr = args[1].toUpperCase();
         String outputPath = args[2];
         String reportPath = args[3];
 
-        TextDetector.Action action = parseAction(actionStr);
-        if (action == null) {
+        List<TextDetector.Action> actions = parseActions(actionStr);
+        if (actions == null) {
             System.exit(1);
         }
 
         DetectorConfig config = DetectorConfig.fromArgs(args);
+        if (actions.size() > 1 && config.renderInPlace) {
+            // The actions share the decoded image
+            System.err.println("Warning: renderInPlace is not supported with several actions. Rendering to copies.");
+            config.renderInPlace = false;
+        }
 
         ensureDirectoryExists(outputPath);
         ensureDirectoryExists(reportPath);
 
-        File[] imageFiles = listImageFiles(directoryPath);
-        if (imageFiles == null || imageFiles.length == 0) {
-            System.err.println("No image files found in the directory: " + directoryPath);
+        // Initialize detectors
+        OllamaLane ollamaLane = config.enableOllama ? new OllamaLane(initializeOllama(config), config.ollamaMaxInFlight) : null;
+        boolean noInput = false;
+        try (InputSource source = InputSource.open(directoryPath, config);
+                FileProcessor processor = new FileProcessor(config, ollamaLane,
+                        () -> initializeTesseract(config), actions, source.getRoot(), outputPath, reportPath)) {
+            // Files are discovered lazily; skip those an earlier run already finished, without reading them
+            AtomicInteger alreadyDone = new AtomicInteger();
+            Iterator<File> pending = source.skip(file -> {
+                boolean done = processor.isCompleted(file);
+                if (done) {
+                    alreadyDone.incrementAndGet();
+                }
+                return done;
+            }).iterator();
+            if (pending.hasNext()) {
+                runBatch(() -> pending, config, processor);
+            } else if (alreadyDone.get() > 0) {
+                System.out.println("Nothing left to do: all " + alreadyDone.get() + " files were finished by an earlier run.");
+            } else {
+                System.err.println("No image files found in the directory: " + directoryPath);
+                noInput = true; // Exit once the journal and report sink are closed
+            }
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        }
+        if (noInput) {
             System.exit(1);
         }
-
-        // Initialize detectors
-        TextDetector tesseractDetector = initializeTesseract(config);
-        TextDetector ollamaDetector = config.enableOllama ? initializeOllama() : null;
-
-        processFiles(imageFiles, tesseractDetector, ollamaDetector, action, outputPath, reportPath);
 
         System.out.println("All files in the directory have been processed.");
     }
 
+    private static void runBatch(Iterable<File> imageFiles, DetectorConfig config, FileProcessor processor) {
+        if (config.pipeline) {
+            TextDetector actionDetector = initializeTesseract(config);
+            try (DetectorPool tesseractPool = new DetectorPool(config.threads, () -> initializeTesseract(config))) {
+                new PipelineRunner(tesseractPool, actionDetector, processor, config).run(imageFiles);
+            } finally {
+                actionDetector.close();
+            }
+        } else if (config.threads > 1) {
+            try (DetectorPool tesseractPool = new DetectorPool(config.threads, () -> initializeTesseract(config))) {
+                new ParallelBatchRunner(tesseractPool, processor, config.scheduleWindow).run(imageFiles);
+            }
+        } else {
+            TextDetector tesseractDetector = initializeTesseract(config);
+            try {
+                processFiles(imageFiles, tesseractDetector, processor);
+            } finally {
+                tesseractDetector.close();
+            }
+        }
+    }
+
     private static void printUsage() {
-        System.out.println("Usage: java VisionGuard <directoryPath> <action> <outputPath> <reportPath>");
-        System.out.println("Actions: OUTLINE, MASK, BURN, EXPORT_TO_FOLDER, FLAG_FOR_REVIEW");
+        System.out.println("Usage: java VisionGuard <directoryPath|DICOMDIR> <action> <outputPath> <reportPath>");
+        System.out.println("       java VisionGuard --serve=PORT [options]");
+        System.out.println("       java VisionGuard --receive=PORT <action> <outputPath> <reportPath> [options]");
+        System.out.println("Actions: OUTLINE, MASK, BURN, EXPORT_TO_FOLDER, FLAG_FOR_REVIEW (comma-separate several, e.g. MASK,EXPORT_TO_FOLDER)");
         System.out.println("Optional parameters:");
         System.out.println("  --ollama=true/false  Enable or disable OllamaTextDetector (default: false)");
+        System.out.println("  --ollamaConnectTimeout=MS  Ollama connect timeout in milliseconds (default: 10000)");
+        System.out.println("  --ollamaTimeout=MS   Ollama request timeout in milliseconds (default: 300000)");
+        System.out.println("  --ollamaMaxInFlight=N  Maximum concurrent Ollama requests (default: 2)");
+        System.out.println("  --cacheDir=PATH      Cache detection results on disk, keyed by pixel content");
+        System.out.println("  --cacheMaxMB=N       Size cap for the detection cache (default: 1024)");
         System.out.println("  --minWidth=X         Minimum width of bounding boxes");
         System.out.println("  --minHeight=Y        Minimum height of bounding boxes");
         System.out.println("  --maxWidth=A         Maximum width of bounding boxes");
         System.out.println("  --maxHeight=B        Maximum height of bounding boxes");
+        System.out.println("  --threads=N          Number of files to process in parallel (default: 1)");
+        System.out.println("  --frameThreads=N     Frames of a multi-frame DICOM OCR'd in parallel (default: 1)");
+        System.out.println("  --dicomInPlace=true/false  MASK/BURN DICOM pixels in the original encoding, keeping the header (default: false)");
+        System.out.println("  --renderInPlace=true/false  Draw actions into the decoded image instead of a copy (default: false)");
+        System.out.println("  --warmTesseract=true/false  Keep each Tesseract engine loaded between images (default: false)");
+        System.out.println("  --mergeRegions=none|line|block  Join word boxes into line or block boxes (default: none)");
+        System.out.println("  --mergePadding=N     Pixels added around merged boxes (default: 2)");
+        System.out.println("  --outputThreads=N    Encode output images on N background threads (default: 0, on the processing thread)");
+        System.out.println("  --outputQueue=N      Output images queued or encoding at once before processing waits (default: 16)");
+        System.out.println("  --pngLevel=0-9       PNG deflate level; 1 is fastest, 9 smallest (default: encoder default)");
+        System.out.println("  --tiling=true/false  OCR images larger than tileSize in overlapping tiles, in parallel (default: false)");
+        System.out.println("  --tileSize=N         Tile side in pixels (default: 2048)");
+        System.out.println("  --tileOverlap=N      Overlap between tiles in pixels, at least the largest word (default: 256)");
+        System.out.println("  --tileThreads=N      Tiles OCR'd at once per detector (default: 4)");
+        System.out.println("  --roiProfiles=FILE   OCR only the zones listed per Modality/Manufacturer in FILE");
+        System.out.println("  --roiFallback=true/false  Rescan the full frame when a zone has text (default: false)");
+        System.out.println("  --triage=true/false  Skip OCR for images with no text-like strokes (default: false)");
+        System.out.println("  --triageMinStrokes=N Stroke-like runs in a row needed to run OCR (default: 8)");
+        System.out.println("  --triageAuditEvery=N OCR every Nth triage skip and log it to triage_audit.tsv (default: 50)");
+        System.out.println("  --ocrPreprocess=true/false  Grayscale, rescale and binarize before Tesseract (default: false)");
+        System.out.println("  --ocrScale=F         Rescale factor for preprocessing, e.g. 0.5 for large frames (default: 1.0)");
+        System.out.println("  --ocrBinarize=true/false  Adaptive threshold during preprocessing (default: true)");
+        System.out.println("  --ocrThresholdWindow=N  Neighbourhood size in pixels for the threshold (default: 31)");
+        System.out.println("  --scheduleWindow=N   Discovered files considered for largest-first scheduling (default: 256)");
+        System.out.println("  --recursive=true/false  Walk subdirectories, e.g. Study/Series/Instance exports (default: false)");
+        System.out.println("  --dicomdir=true/false  Read the input list from a DICOMDIR when present (default: true)");
+        System.out.println("  --resume=true/false  Skip files completed by an earlier run, per the journal in reportPath (default: false)");
+        System.out.println("  --journalSyncEvery=N Journal records per fsync (default: 64)");
+        System.out.println("  --pipeline=true/false  Run decode, detect, act and write as separate stages (default: false)");
+        System.out.println("  --decodeThreads=N    Decode stage threads in pipeline mode (default: 1)");
+        System.out.println("  --actThreads=N       Action stage threads in pipeline mode (default: 1)");
+        System.out.println("  --writeThreads=N     Report stage threads in pipeline mode (default: 1)");
+        System.out.println("  --queueCapacity=N    Files buffered between pipeline stages (default: 4)");
+        System.out.println("  --reportFormat=text|jsonl  One report file per image, or one visionguard_report.jsonl per run (default: text)");
+        System.out.println("  --reportQueue=N      JSONL records buffered ahead of the report writer (default: 1024)");
+        System.out.println("  --metrics=true/false Write metrics.prom and metrics.json to the report path (default: false)");
+        System.out.println("  --metricsInterval=S  Seconds between metrics file updates (default: 10)");
+        System.out.println("  --metricsPort=N      Serve /metrics and /metrics.json on localhost:N (default: off)");
+        System.out.println("  --serve=PORT         Run as an HTTP service on localhost:PORT instead of a batch (must come first)");
+        System.out.println("  --serveMaxInFlight=N Requests accepted at once in server mode; more get 503 (default: 4)");
+        System.out.println("  --receive=PORT       Accept DICOM C-STORE on PORT and redact instances as they arrive (must come first)");
+        System.out.println("  --receiveAET=AET     AE title of the receiver (default: VISIONGUARD)");
     }
 
-    private static TextDetector.Action parseAction(String actionStr) {
+    // One action or a comma-separated list, e.g. MASK,EXPORT_TO_FOLDER
+    private static List<TextDetector.Action> parseActions(String actionStr) {
+        Set<TextDetector.Action> actions = EnumSet.noneOf(TextDetector.Action.class);
         try {
-            return TextDetector.Action.valueOf(actionStr);
+            for (String name : actionStr.split(",")) {
+                actions.add(TextDetector.Action.valueOf(name.trim()));
+            }
         } catch (IllegalArgumentException e) {
-            System.err.println("Invalid action. Use OUTLINE, MASK, EXPORT_TO_FOLDER, or FLAG_FOR_REVIEW.");
+            System.err.println("Invalid action. Use OUTLINE, MASK, BURN, EXPORT_TO_FOLDER, or FLAG_FOR_REVIEW, or a comma-separated list.");
             return null;
         }
+        return new ArrayList<>(actions);
     }
 
-    private static File[] listImageFiles(String directoryPath) {
-        File directory = new File(directoryPath);
-        if (!directory.isDirectory()) {
-            System.err.println("The specified path is not a directory: " + directoryPath);
-            return null;
+    // Detectors are loaded once and kept for the life of the process
+    private static void serve(DetectorConfig config) {
+        if (config.servePort <= 0) {
+            System.err.println("Invalid --serve port.");
+            System.exit(1);
+        }
+        DetectorPool tesseractPool = new DetectorPool(config.threads, () -> initializeTesseract(config));
+        try {
+            RoiProfiles roiProfiles = config.roiProfiles != null
+                    ? RoiProfiles.load(Path.of(config.roiProfiles), config.roiFallback) : null;
+            // Synchronous, since responses read the file right away
+            OutputWriter outputWriter = new OutputWriter(0, 0, config.pngLevel);
+            RedactionServer server = new RedactionServer(tesseractPool, roiProfiles, RegionMerger.fromConfig(config),
+                    outputWriter, config.servePort, config.serveMaxInFlight);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                server.close();
+                tesseractPool.close();
+            }, "server-shutdown"));
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            tesseractPool.close();
+            System.exit(1);
+        }
+    }
+
+    // Instances pushed over DICOM go through the batch steps without being stored first
+    private static void receive(String[] args) {
+        List<TextDetector.Action> actions = parseActions(args[1].toUpperCase());
+        if (actions == null) {
+            System.exit(1);
+        }
+        String outputPath = args[2];
+        String reportPath = args[3];
+        DetectorConfig config = DetectorConfig.fromArgs(args);
+        if (config.receivePort <= 0) {
+            System.err.println("Invalid --receive port.");
+            System.exit(1);
+        }
+        if (actions.size() > 1 && config.renderInPlace) {
+            System.err.println("Warning: renderInPlace is not supported with several actions. Rendering to copies.");
+            config.renderInPlace = false;
+        }
+        ensureDirectoryExists(outputPath);
+        ensureDirectoryExists(reportPath);
+
+        OllamaLane ollamaLane = config.enableOllama ? new OllamaLane(initializeOllama(config), config.ollamaMaxInFlight) : null;
+        DetectorPool tesseractPool = new DetectorPool(config.threads, () -> initializeTesseract(config));
+        try {
+            FileProcessor processor = new FileProcessor(config, ollamaLane,
+                    () -> initializeTesseract(config), actions, null, outputPath, reportPath);
+            DicomReceiver receiver = new DicomReceiver(processor, tesseractPool, config.receiveAET, config.receivePort);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                receiver.close();
+                try {
+                    processor.close(); // Drains reports and the journal
+                } catch (IOException e) {
+                    System.err.println("Error: " + e.getMessage());
+                }
+                tesseractPool.close();
+            }, "receiver-shutdown"));
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            tesseractPool.close();
+            System.exit(1);
         }
-        return directory.listFiles((dir, name) -> name.matches(".*\\.(jpg|jpeg|png|bmp|dicom|dcm)$"));
     }
 
     private static void ensureDirectoryExists(String path) {
@@ -111,59 +283,26 @@ public class VisionGuard {
         return detector;
     }
 
-    private static TextDetector initializeOllama() {
-        TextDetector detector = loadDetector(OllamaTextDetector.class);
+    private static OllamaTextDetector initializeOllama(DetectorConfig config) {
+        OllamaTextDetector detector = loadDetector(OllamaTextDetector.class);
         if (detector == null) {
             System.err.println("Failed to load OllamaTextDetector.");
             System.exit(1);
         }
         detector.setupParameters("http://localhost:11434/api/generate");
+        detector.initialize(config);
         return detector;
     }
 
-    private static void processFiles(File[] files, TextDetector tesseractDetector, TextDetector ollamaDetector,
-            TextDetector.Action action, String outputPath, String reportPath) {
+    private static void processFiles(Iterable<File> files, TextDetector tesseractDetector, FileProcessor processor) {
         for (File file : files) {
-            System.out.println("Processing file: " + file.getName());
-
             try {
-                BufferedImage image;
-
-                // Detect file type and preprocess DICOM if necessary
-                if (file.getName().toLowerCase().endsWith(".dcm") || file.getName().toLowerCase().endsWith(".dicom")) {
-                    image = DICOMImageReader.readDICOMAsBufferedImage(file);
-                } else {
-                    image = ImageIO.read(file);
-                }
-
-                if (image == null) {
-                    System.out.println("Failed to load image. Skipping: " + file.getName());
-                    continue;
-                }
-
-                // Run detection and actions
-                DetectionResult tesseractResult = tesseractDetector.detect(image);
-                if (tesseractResult.regions == null || tesseractResult.regions.isEmpty()) {
-                    System.out.println("No valid text detected. Skipping actions for: " + file.getName());
-                    continue;
-                }
-                DetectionResult ollamaResult = ollamaDetector != null ? ollamaDetector.detect(image) : null;
-
-                tesseractDetector.applyAction(action, tesseractResult, outputPath, file.getName());
-
-                if (ollamaDetector != null) {
-                    ollamaDetector.applyAction(action, tesseractResult, outputPath, file.getName());
-                }
-
-                String individualReportPath = reportPath + "/" + file.getName() + "_report.txt";
-                DetectorValidator.validate(tesseractResult, ollamaResult, individualReportPath);
-
-                System.out.println("File processed: " + file.getName());
-            } catch (IOException e) {
-                System.err.println("Error processing file: " + file.getName() + ". Skipping.");
-                e.printStackTrace();
+                processor.process(file, tesseractDetector);
+            } catch (IOException | RuntimeException e) {
+                processor.failed(file, e);
             }
         }
+        processor.awaitPending();
     }
 
     private static <T extends TextDetector> T loadDetector(Class<T> detectorClass) {
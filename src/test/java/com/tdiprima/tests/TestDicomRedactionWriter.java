@@ -0,0 +1,137 @@
+package com.tdiprima.tests;
+
+import com.tdiprima.visionguard.DICOMImageReader;
+import com.tdiprima.visionguard.DICOMImageReader.DicomImage;
+import com.tdiprima.visionguard.DicomRedactionWriter;
+import com.tdiprima.visionguard.DicomRedactionWriter.Fill;
+import com.tdiprima.visionguard.TextDetector.TextRegion;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.UID;
+import org.dcm4che3.data.VR;
+import org.dcm4che3.io.DicomInputStream;
+import org.dcm4che3.io.DicomOutputStream;
+import org.dcm4che3.util.UIDUtils;
+
+/**
+ * Redacts synthetic multi-frame DICOM objects in place (8-bit, signed 16-bit
+ * and 16-bit MONOCHROME1) and re-reads the output: only the region pixels may
+ * change, to the stored value that shows as black, and the transfer syntax and
+ * the private elements after the pixel data must survive.
+ *
+ * @author tdiprima
+ */
+public class TestDicomRedactionWriter {
+
+    private static final int ROWS = 24;
+    private static final int COLUMNS = 32;
+    private static final int FRAMES = 3;
+    private static final int PRIVATE_CREATOR = 0x7FE10010;
+    private static final int PRIVATE_ELEMENT = 0x7FE11001;
+
+    // The second region runs off the bottom-right corner and must be clipped
+    private static final List<TextRegion> REGIONS = List.of(
+            new TextRegion(5, 4, 10, 6, "NAME"),
+            new TextRegion(28, 20, 10, 10, "ID"));
+
+    public static void main(String[] args) throws Exception {
+        File dir = Files.createTempDirectory("redaction").toFile();
+        // Stored values that display as black: 0, the signed 12-bit minimum, and the MONOCHROME1 maximum
+        redact(dir, "MONOCHROME2", 8, 8, false, UID.ExplicitVRLittleEndian, 0);
+        redact(dir, "MONOCHROME2", 16, 12, true, UID.ImplicitVRLittleEndian, -2048);
+        redact(dir, "MONOCHROME1", 16, 16, false, UID.ImplicitVRLittleEndian, 0xFFFF);
+        System.out.println("All DicomRedactionWriter checks passed.");
+    }
+
+    private static void redact(File dir, String photometric, int bitsAllocated, int bitsStored, boolean signed,
+            String transferSyntax, int black) throws Exception {
+        String name = photometric + "_" + bitsAllocated + (signed ? "s" : "u");
+        int bytesPerSample = bitsAllocated / 8;
+        byte[] pixels = new byte[ROWS * COLUMNS * FRAMES * bytesPerSample];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = (byte) (i * 7 + 3); // Never a whole fill value on its own
+        }
+
+        Attributes source = new Attributes();
+        source.setString(Tag.SOPClassUID, VR.UI, UID.SecondaryCaptureImageStorage);
+        source.setString(Tag.SOPInstanceUID, VR.UI, UIDUtils.createUID());
+        source.setInt(Tag.Rows, VR.US, ROWS);
+        source.setInt(Tag.Columns, VR.US, COLUMNS);
+        source.setInt(Tag.SamplesPerPixel, VR.US, 1);
+        source.setInt(Tag.BitsAllocated, VR.US, bitsAllocated);
+        source.setInt(Tag.BitsStored, VR.US, bitsStored);
+        source.setInt(Tag.HighBit, VR.US, bitsStored - 1);
+        source.setInt(Tag.PixelRepresentation, VR.US, signed ? 1 : 0);
+        source.setString(Tag.NumberOfFrames, VR.IS, String.valueOf(FRAMES));
+        source.setString(Tag.PhotometricInterpretation, VR.CS, photometric);
+        source.setBytes(Tag.PixelData, bitsAllocated == 16 ? VR.OW : VR.OB, pixels);
+        source.setString(PRIVATE_CREATOR, VR.LO, "VISIONGUARD TEST");
+        source.setBytes(PRIVATE_ELEMENT, VR.OB, new byte[]{1, 2, 3, 4});
+
+        File sourceFile = new File(dir, name + ".dcm");
+        try (DicomOutputStream dos = new DicomOutputStream(sourceFile)) {
+            dos.writeDataset(source.createFileMetaInformation(transferSyntax), source);
+        }
+
+        File outputFile = new File(dir, name + "_redacted.dcm");
+        try (DicomImage image = DICOMImageReader.open(sourceFile)) {
+            check(DicomRedactionWriter.write(image, REGIONS, Fill.BLACK, outputFile), name + ": not redacted in place");
+        }
+
+        Attributes fmi;
+        Attributes output;
+        try (DicomInputStream in = new DicomInputStream(outputFile)) {
+            output = in.readDataset();
+            fmi = in.getFileMetaInformation();
+        }
+        check(transferSyntax.equals(fmi.getString(Tag.TransferSyntaxUID)), name + ": transfer syntax changed");
+        check(!source.getString(Tag.SOPInstanceUID).equals(output.getString(Tag.SOPInstanceUID)), name + ": instance UID kept");
+        check(Arrays.equals(new byte[]{1, 2, 3, 4}, output.getBytes(PRIVATE_ELEMENT)), name + ": private element after pixel data lost");
+
+        byte[] redacted = output.getBytes(Tag.PixelData);
+        check(redacted.length == pixels.length, name + ": pixel data length " + redacted.length);
+        int changed = 0;
+        for (int i = 0; i < pixels.length / bytesPerSample; i++) {
+            int x = i % COLUMNS;
+            int y = (i / COLUMNS) % ROWS;
+            int before = sample(pixels, i, bytesPerSample);
+            int after = sample(redacted, i, bytesPerSample);
+            if (inRegion(x, y)) {
+                check(after == (black & (bytesPerSample == 1 ? 0xFF : 0xFFFF)), name + ": pixel " + i + " not filled: " + after);
+                changed++;
+            } else {
+                check(after == before, name + ": pixel " + i + " outside the regions changed");
+            }
+        }
+        // 10x6 plus the clipped 4x4 corner, in every frame
+        check(changed == (10 * 6 + 4 * 4) * FRAMES, name + ": " + changed + " pixels redacted");
+        System.out.println(name + ": " + changed + " pixels redacted, transfer syntax " + transferSyntax);
+    }
+
+    private static boolean inRegion(int x, int y) {
+        for (TextRegion region : REGIONS) {
+            if (x >= region.x && x < region.x + region.width && y >= region.y && y < region.y + region.height) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Little-endian stored value, without sign extension
+    private static int sample(byte[] data, int index, int bytesPerSample) {
+        if (bytesPerSample == 1) {
+            return data[index] & 0xFF;
+        }
+        return (data[2 * index] & 0xFF) | (data[2 * index + 1] & 0xFF) << 8;
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.tdiprima.tests;
+
+import com.sun.net.httpserver.HttpServer;
+import com.tdiprima.visionguard.DetectorConfig;
+import com.tdiprima.visionguard.OllamaLane;
+import com.tdiprima.visionguard.OllamaTextDetector;
+import com.tdiprima.visionguard.TextDetector.DetectionResult;
+import java.awt.image.BufferedImage;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks that the Ollama lane stays bounded against a slow server: no more
+ * than the in-flight cap reaches the server, and no more than twice that
+ * (with their images) is ever pending, however fast files are submitted.
+ *
+ * @author tdiprima
+ */
+public class TestOllamaLane {
+
+    private static final int MAX_IN_FLIGHT = 2;
+    private static final int FILES = 12;
+
+    public static void main(String[] args) throws Exception {
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger peakActive = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        ExecutorService handlers = Executors.newCachedThreadPool();
+        server.setExecutor(handlers);
+        server.createContext("/api/generate", exchange -> {
+            peakActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            try {
+                exchange.getRequestBody().readAllBytes();
+                Thread.sleep(200); // A slow model
+                byte[] body = "{\"response\":\"PATIENT\",\"done\":true}".getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream os = exchange.getResponseBody()) {
+                    os.write(body);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                active.decrementAndGet();
+                exchange.close();
+            }
+        });
+        server.start();
+
+        try {
+            DetectorConfig config = new DetectorConfig();
+            config.ollamaMaxInFlight = MAX_IN_FLIGHT;
+            OllamaTextDetector detector = new OllamaTextDetector();
+            detector.setupParameters("http://127.0.0.1:" + server.getAddress().getPort() + "/api/generate");
+            detector.initialize(config);
+            OllamaLane lane = new OllamaLane(detector, MAX_IN_FLIGHT);
+
+            List<CompletableFuture<DetectionResult>> results = new ArrayList<>();
+            int peakPending = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < FILES; i++) {
+                results.add(lane.submit(new BufferedImage(256, 256, BufferedImage.TYPE_INT_RGB)));
+                int pending = (int) results.stream().filter(result -> !result.isDone()).count();
+                peakPending = Math.max(peakPending, pending);
+            }
+            long submitMillis = (System.nanoTime() - start) / 1_000_000;
+            for (CompletableFuture<DetectionResult> result : results) {
+                check("PATIENT".equals(result.join().rawResponse), "response: " + result.join().rawResponse);
+            }
+
+            System.out.println("Peak pending " + peakPending + ", peak at server " + peakActive.get()
+                    + ", submitting took " + submitMillis + " ms");
+            check(peakPending <= 2 * MAX_IN_FLIGHT, "pending requests not bounded: " + peakPending);
+            check(peakActive.get() <= MAX_IN_FLIGHT, "in-flight cap exceeded: " + peakActive.get());
+            // 12 files through 2 slots of 200 ms: the submitter must have waited for the lane
+            check(submitMillis >= 200 * (FILES - 2 * MAX_IN_FLIGHT) / MAX_IN_FLIGHT - 100, "submit never waited");
+            System.out.println("All OllamaLane checks passed.");
+        } finally {
+            server.stop(0);
+            handlers.shutdown();
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
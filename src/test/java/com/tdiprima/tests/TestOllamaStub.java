@@ -0,0 +1,94 @@
+package com.tdiprima.tests;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpServer;
+import com.tdiprima.visionguard.DetectorConfig;
+import com.tdiprima.visionguard.OllamaTextDetector;
+import com.tdiprima.visionguard.TextDetector.DetectionResult;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.imageio.ImageIO;
+
+/**
+ * Test the Ollama client against a local stub server
+ *
+ * @author tdiprima
+ */
+public class TestOllamaStub {
+
+    public static void main(String[] args) throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger peakActive = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        ExecutorService handlers = Executors.newCachedThreadPool();
+        server.setExecutor(handlers);
+        server.createContext("/api/generate", exchange -> {
+            peakActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            // Check the streamed payload is valid JSON carrying a decodable PNG
+            JsonObject request = JsonParser.parseReader(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)).getAsJsonObject();
+            byte[] png = Base64.getDecoder().decode(request.getAsJsonArray("images").get(0).getAsString());
+            BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(png));
+            int n = requests.incrementAndGet();
+            try {
+                Thread.sleep(100); // Long enough for requests to overlap
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            String text = "PATIENT " + n + " (" + decoded.getWidth() + "x" + decoded.getHeight() + ")";
+            byte[] body = ("{\"model\":\"stub\",\"response\":\"" + text + "\",\"done\":true}").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            active.decrementAndGet();
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        server.start();
+
+        try {
+            DetectorConfig config = new DetectorConfig();
+            config.ollamaMaxInFlight = 2;
+            config.ollamaTimeoutMs = 5000;
+
+            OllamaTextDetector detector = new OllamaTextDetector();
+            detector.setupParameters("http://127.0.0.1:" + server.getAddress().getPort() + "/api/generate");
+            detector.initialize(config);
+
+            List<CompletableFuture<DetectionResult>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(detector.detectAsync(new BufferedImage(64, 64, BufferedImage.TYPE_BYTE_GRAY)));
+            }
+            for (CompletableFuture<DetectionResult> result : results) {
+                String response = result.join().rawResponse;
+                System.out.println("Response: " + response);
+                check(response.startsWith("PATIENT ") && response.endsWith(" (64x64)"), "unexpected response: " + response);
+            }
+            System.out.println("Requests served by stub: " + requests.get() + ", peak in flight " + peakActive.get());
+            check(requests.get() == 4, "expected 4 requests, got " + requests.get());
+            check(peakActive.get() <= 2, "in-flight cap exceeded: " + peakActive.get());
+            System.out.println("All Ollama stub checks passed.");
+        } finally {
+            server.stop(0);
+            handlers.shutdown();
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
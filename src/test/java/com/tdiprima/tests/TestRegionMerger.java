@@ -0,0 +1,89 @@
+package com.tdiprima.tests;
+
+import com.tdiprima.visionguard.RegionIndex;
+import com.tdiprima.visionguard.RegionMerger;
+import com.tdiprima.visionguard.RegionMerger.Mode;
+import com.tdiprima.visionguard.TextDetector.TextRegion;
+import java.util.List;
+
+/**
+ * Checks word joining into lines and blocks, padding kept within the image,
+ * duplicate text read once, and the spatial index the joins are built on.
+ *
+ * @author tdiprima
+ */
+public class TestRegionMerger {
+
+    // Two words on one line, a second line just below, and a word far to the right
+    private static final List<TextRegion> WORDS = List.of(
+            new TextRegion(10, 10, 40, 20, "JOHN"),
+            new TextRegion(60, 10, 30, 20, "DOE"),
+            new TextRegion(10, 40, 30, 20, "MRN"),
+            new TextRegion(300, 10, 20, 20, "X"));
+
+    public static void main(String[] args) {
+        List<TextRegion> lines = new RegionMerger(Mode.LINE, 2).merge(WORDS, 400, 200);
+        check(lines.size() == 3, "expected 3 lines, got " + lines.size());
+        assertRegion(find(lines, "JOHN DOE"), 8, 8, 84, 24);
+        assertRegion(find(lines, "MRN"), 8, 38, 34, 24);
+        assertRegion(find(lines, "X"), 298, 8, 24, 24);
+
+        List<TextRegion> blocks = new RegionMerger(Mode.BLOCK, 2).merge(WORDS, 400, 200);
+        check(blocks.size() == 2, "expected 2 blocks, got " + blocks.size());
+        assertRegion(find(blocks, "JOHN DOE MRN"), 8, 8, 84, 54);
+        assertRegion(find(blocks, "X"), 298, 8, 24, 24);
+
+        // Padding stops at the image edge on every side
+        List<TextRegion> edge = new RegionMerger(Mode.LINE, 5).merge(List.of(new TextRegion(2, 3, 20, 10, "ID")), 25, 15);
+        assertRegion(edge.get(0), 0, 0, 25, 15);
+
+        // The same overlay reported twice counts once; the same word elsewhere on the line does not
+        List<TextRegion> repeated = new RegionMerger(Mode.LINE, 0).merge(List.of(
+                new TextRegion(10, 10, 60, 20, "PATIENT"),
+                new TextRegion(12, 11, 60, 20, "patient "),
+                new TextRegion(80, 10, 20, 20, "A"),
+                new TextRegion(105, 10, 20, 20, "A")), 400, 200);
+        check(repeated.size() == 1, "expected 1 line, got " + repeated.size());
+        check("PATIENT A A".equals(repeated.get(0).text), "duplicate text: " + repeated.get(0).text);
+        assertRegion(repeated.get(0), 10, 10, 115, 21);
+
+        checkIndex();
+        System.out.println("All RegionMerger checks passed.");
+    }
+
+    private static void checkIndex() {
+        TextRegion large = new TextRegion(0, 0, 100, 100, "LARGE"); // Spans many cells
+        TextRegion left = new TextRegion(120, 10, 10, 10, "LEFT");
+        TextRegion right = new TextRegion(130, 10, 10, 10, "RIGHT"); // Touches LEFT
+        TextRegion far = new TextRegion(500, 500, 10, 10, "FAR");
+        RegionIndex index = new RegionIndex(List.of(large, left, right, far), 16);
+
+        check(index.search(0, 0, 400, 400).size() == 3, "each region must be listed once");
+        check(index.overlapping(50, 50, 5, 5).equals(List.of(large)), "point query");
+        check(index.overlapping(140, 0, 0, 5).equals(List.of()), "edge query above the boxes");
+        check(index.near(left, 0).equals(List.of(right)), "touching edges count, and a region is not near itself");
+        check(index.near(far, 100).isEmpty(), "nothing near FAR");
+        check(index.near(left, 20).containsAll(List.of(right, large)), "LARGE is 20 px from LEFT");
+    }
+
+    private static TextRegion find(List<TextRegion> regions, String text) {
+        for (TextRegion region : regions) {
+            if (text.equals(region.text)) {
+                return region;
+            }
+        }
+        throw new AssertionError("no region reads '" + text + "' in " + regions.stream().map(r -> r.text).toList());
+    }
+
+    private static void assertRegion(TextRegion region, int x, int y, int width, int height) {
+        check(region.x == x && region.y == y && region.width == width && region.height == height,
+                "'" + region.text + "' at " + region.x + "," + region.y + " " + region.width + "x" + region.height
+                + ", expected " + x + "," + y + " " + width + "x" + height);
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.tdiprima.tests;
+
+import com.tdiprima.visionguard.TextMatcher;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks exact, normalized and fuzzy matching between Tesseract words and
+ * Ollama lines, and times the matcher on a text-dense page.
+ *
+ * @author tdiprima
+ */
+public class TestTextMatcher {
+
+    public static void main(String[] args) {
+        List<String> words = List.of("DOE^JANE", "MRN", "O012345", "Radiology", "xyzzy");
+        List<String> lines = List.of(
+                "Patient: doe^jane",         // Case differs
+                "MRN 0012345",               // O/0 swap in the Tesseract word
+                "Radiologv department",      // One-character OCR error
+                "Something only Ollama saw");
+
+        TextMatcher.Result result = TextMatcher.match(words, lines);
+        check(result.exactMatches == 3, "exact matches: " + result.exactMatches);
+        check(result.fuzzyMatches == 1, "fuzzy matches: " + result.fuzzyMatches);
+        check(result.unmatchedTesseract.equals(List.of("xyzzy")), "unmatched Tesseract: " + result.unmatchedTesseract);
+        check(result.unmatchedOllama.equals(List.of("Something only Ollama saw")), "unmatched Ollama: " + result.unmatchedOllama);
+        System.out.printf("Agreement: %.2f (Tesseract %.2f, Ollama %.2f)%n",
+                result.agreement, result.tesseractAgreement, result.ollamaAgreement);
+
+        // Substrings still count, as with String.contains
+        check(TextMatcher.match(List.of("ACC"), List.of("ACC998877")).unmatchedTesseract.isEmpty(), "substring match");
+
+        // A dense page: 5000 words against 2000 lines
+        List<String> manyWords = new ArrayList<>();
+        List<String> manyLines = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            manyWords.add("word" + i);
+        }
+        for (int i = 0; i < 2000; i++) {
+            manyLines.add("line " + i + " has word" + (i * 2) + " and wrod" + (i * 2 + 1));
+        }
+        TextMatcher.match(manyWords, manyLines); // Warm up
+        long start = System.nanoTime();
+        TextMatcher.Result dense = TextMatcher.match(manyWords, manyLines);
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        System.out.println("Dense page: " + dense.exactMatches + " exact, " + dense.fuzzyMatches + " fuzzy, "
+                + dense.unmatchedTesseract.size() + " unmatched words in " + millis + " ms");
+
+        System.out.println("All TextMatcher checks passed.");
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
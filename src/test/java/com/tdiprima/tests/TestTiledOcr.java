@@ -0,0 +1,99 @@
+package com.tdiprima.tests;
+
+import com.tdiprima.visionguard.DetectorConfig;
+import com.tdiprima.visionguard.TesseractTextDetector;
+import com.tdiprima.visionguard.TextDetector.DetectionResult;
+import com.tdiprima.visionguard.TextDetector.TextRegion;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Tiled OCR of a large synthetic image with words drawn across tile
+ * boundaries: inside an overlap (seen whole by two or four tiles) and across
+ * a tile's edge (seen cut off by one tile). Each word must be reported
+ * exactly once, at its place in the full image. The tessdata directory comes
+ * from -Dtessdata=... or TESSDATA_PREFIX.
+ *
+ * @author tdiprima
+ */
+public class TestTiledOcr {
+
+    // 1024 px tiles with 128 px overlap: columns start at 0, 788 and 1576, rows at 0 and 376
+    private static final int WIDTH = 2600;
+    private static final int HEIGHT = 1400;
+    private static final int TILE_SIZE = 1024;
+    private static final int TILE_OVERLAP = 128;
+    private static final int COLUMN_CUT_1 = 906;  // Middle of the overlap [788, 1024)
+    private static final int COLUMN_CUT_2 = 1694; // Middle of the overlap [1576, 1812)
+    private static final int ROW_CUT = 700;       // Middle of the overlap [376, 1024)
+
+    public static void main(String[] args) {
+        String tessdata = System.getProperty("tessdata", System.getenv().getOrDefault("TESSDATA_PREFIX", "/usr/share/tesseract/tessdata"));
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, WIDTH, HEIGHT);
+        g.setColor(Color.BLACK);
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g.setFont(new Font(Font.SANS_SERIF, Font.BOLD, 48));
+
+        Map<String, Rectangle> drawn = new LinkedHashMap<>();
+        drawn.put("SMITH", drawCentered(g, "SMITH", COLUMN_CUT_1, ROW_CUT));    // In the corner overlap of four tiles
+        drawn.put("MRN47", drawCentered(g, "MRN47", COLUMN_CUT_2, ROW_CUT));    // Same, between the other columns
+        drawn.put("JOHNSON", drawCentered(g, "JOHNSON", 1100, 200));          // Across the right edge of the first column
+        drawn.put("ACCESSION", drawCentered(g, "ACCESSION", 400, 1050));      // Across the bottom edge of the first row
+        g.dispose();
+
+        DetectorConfig config = new DetectorConfig();
+        config.tiling = true;
+        config.tileSize = TILE_SIZE;
+        config.tileOverlap = TILE_OVERLAP;
+        config.tileThreads = 2;
+        TesseractTextDetector detector = new TesseractTextDetector();
+        try {
+            detector.setupParameters(tessdata, "eng");
+            detector.initialize(config);
+            DetectionResult result = detector.detect(image);
+            check(!result.failed, "OCR failed");
+
+            for (Map.Entry<String, Rectangle> word : drawn.entrySet()) {
+                int found = 0;
+                for (TextRegion region : result.regions) {
+                    if (word.getKey().equals(region.text.trim())) {
+                        found++;
+                        Rectangle box = new Rectangle(region.x, region.y, region.width, region.height);
+                        check(box.contains(word.getValue().getCenterX(), word.getValue().getCenterY()),
+                                word.getKey() + " reported at " + box + ", drawn at " + word.getValue());
+                    }
+                }
+                System.out.println(word.getKey() + ": reported " + found + " time(s)");
+                check(found == 1, word.getKey() + " reported " + found + " times");
+            }
+            System.out.println("All tiled OCR checks passed.");
+        } finally {
+            detector.close();
+        }
+    }
+
+    // Draws the word with its box centered on (x, y) and returns the box
+    private static Rectangle drawCentered(Graphics2D g, String word, int x, int y) {
+        FontMetrics metrics = g.getFontMetrics();
+        int width = metrics.stringWidth(word);
+        int height = metrics.getAscent();
+        g.drawString(word, x - width / 2, y + height / 2);
+        return new Rectangle(x - width / 2, y - height / 2, width, height);
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}